@@ -0,0 +1,54 @@
+package fileexplorer.bench;
+
+import fileexplorer.core.DeleteOperation;
+import fileexplorer.core.OperationReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+// Deleting a whole tree the way the Delete button does. Every run consumes its tree, so
+// each one gets a fresh copy and is timed once.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DeleteBenchmark {
+    @Param({"1000", "100000"})
+    public int entries;
+
+    @Param({"WIDE", "DEEP"})
+    public SyntheticTree.Shape shape;
+
+    private SyntheticTree tree;
+
+    @Setup(Level.Invocation)
+    public void createTree() throws IOException {
+        tree = SyntheticTree.create(entries, shape);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteLeftovers() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public OperationReport deleteTree() {
+        return new DeleteOperation(Collections.singletonList(tree.root)).run();
+    }
+}
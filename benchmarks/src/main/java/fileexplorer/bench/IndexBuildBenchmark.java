@@ -0,0 +1,63 @@
+package fileexplorer.bench;
+
+import fileexplorer.core.FileIndex;
+import fileexplorer.core.FileIndexBuilder;
+import fileexplorer.core.Pools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Crawling a whole tree into a search index, as the first search in a folder does. A crawl
+// takes seconds on the large trees, so each one is timed once.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexBuildBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int entries;
+
+    @Param({"WIDE", "DEEP"})
+    public SyntheticTree.Shape shape;
+
+    private SyntheticTree tree;
+    private File root;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        tree = SyntheticTree.create(entries, shape);
+        root = tree.root.toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public FileIndex buildIndex() {
+        return build(root);
+    }
+
+    static FileIndex build(File root) {
+        FileIndexBuilder builder = new FileIndexBuilder(root, null);
+        Pools.INDEX_POOL.invoke(builder.crawler());
+        return builder.build();
+    }
+}
@@ -0,0 +1,66 @@
+package fileexplorer.bench;
+
+import fileexplorer.core.DirectoryListing;
+import fileexplorer.core.EntryColumns;
+import fileexplorer.core.EntryFilter;
+import fileexplorer.core.EntrySorter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.filechooser.FileSystemView;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// What navigating into a folder costs before the table is complete: one listing with a stat
+// per entry, then the name sort. Re-sorting by another column is measured on its own.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int entries;
+
+    private final FileSystemView view = FileSystemView.getFileSystemView();
+    private SyntheticTree tree;
+    private EntryColumns listed;
+    private int[] byName;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        tree = SyntheticTree.create(entries, SyntheticTree.Shape.WIDE);
+        listed = new EntryColumns(tree.root.toFile());
+        DirectoryListing.read(tree.root.toFile(), listed, view, () -> false, rows -> {});
+        byName = listed.sortedByName();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public int[] listAndSort() throws IOException {
+        EntryColumns columns = new EntryColumns(tree.root.toFile());
+        DirectoryListing.read(tree.root.toFile(), columns, view, () -> false, rows -> {});
+        return columns.sortedByName();
+    }
+
+    @Benchmark
+    public int[] resortBySize() {
+        return EntrySorter.sort(listed, byName, listed.size(), EntrySorter.SIZE, true, EntryFilter.NONE, null, () -> false);
+    }
+}
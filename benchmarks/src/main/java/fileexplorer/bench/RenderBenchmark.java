@@ -0,0 +1,74 @@
+package fileexplorer.bench;
+
+import fileexplorer.core.DirectoryListing;
+import fileexplorer.core.EntryColumns;
+import fileexplorer.core.FileTableModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.swing.filechooser.FileSystemView;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// The cost of painting one screen of the table: every cell of PAGE_ROWS rows, either rows
+// seen for the first time (scrolling through) or rows already built (repaints)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+    private static final int PAGE_ROWS = 40;
+
+    @Param({"1000", "100000"})
+    public int entries;
+
+    private SyntheticTree tree;
+    private final FileTableModel model = new FileTableModel();
+    private int top;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        tree = SyntheticTree.create(entries, SyntheticTree.Shape.WIDE);
+        EntryColumns columns = new EntryColumns(tree.root.toFile());
+        DirectoryListing.read(tree.root.toFile(), columns, FileSystemView.getFileSystemView(), () -> false, rows -> {});
+        int[] order = columns.sortedByName();
+        model.setColumns(columns, order, order.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public void scrollPage(Blackhole bh) {
+        top = (top + PAGE_ROWS) % Math.max(1, model.getRowCount() - PAGE_ROWS);
+        renderPage(top, bh);
+    }
+
+    @Benchmark
+    public void repaintPage(Blackhole bh) {
+        renderPage(0, bh);
+    }
+
+    private void renderPage(int first, Blackhole bh) {
+        int last = Math.min(model.getRowCount(), first + PAGE_ROWS);
+        for (int row = first; row < last; row++) {
+            for (int col = 0; col < model.getColumnCount(); col++) bh.consume(model.getValueAt(row, col));
+        }
+    }
+}
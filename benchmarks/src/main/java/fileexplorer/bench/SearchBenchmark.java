@@ -0,0 +1,68 @@
+package fileexplorer.bench;
+
+import fileexplorer.core.FileIndex;
+import fileexplorer.core.NameQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Name search as the search bar runs it: substring and glob queries answered from an index
+// built once per trial; building it is measured by IndexBuildBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int LIMIT = 2000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int entries;
+
+    @Param({"WIDE", "DEEP"})
+    public SyntheticTree.Shape shape;
+
+    private SyntheticTree tree;
+    private File root;
+    private FileIndex index;
+    private final NameQuery substring = NameQuery.parse("ile00123");
+    private final NameQuery glob = NameQuery.parse("file*7.log");
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        tree = SyntheticTree.create(entries, shape);
+        root = tree.root.toFile();
+        index = IndexBuildBenchmark.build(root);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public List<File> substringQuery() {
+        return index.query(substring, root, LIMIT);
+    }
+
+    @Benchmark
+    public List<File> globQuery() {
+        return index.query(glob, root, LIMIT);
+    }
+}
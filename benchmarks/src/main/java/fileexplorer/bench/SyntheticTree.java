@@ -0,0 +1,79 @@
+package fileexplorer.bench;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Throwaway directory trees of a given size and shape, built under the system temp folder
+public final class SyntheticTree {
+    public enum Shape {
+        // every entry in the root folder
+        WIDE,
+        // each folder holds FILES_PER_FOLDER files and two subfolders, filled breadth first
+        DEEP
+    }
+
+    private static final int FILES_PER_FOLDER = 8;
+
+    public final Path root;
+    // every folder, the root first
+    public final List<Path> folders = new ArrayList<>();
+    public int files;
+
+    private SyntheticTree(Path root) {
+        this.root = root;
+    }
+
+    public static SyntheticTree create(int entries, Shape shape) throws IOException {
+        SyntheticTree tree = new SyntheticTree(Files.createTempDirectory("fx-bench-"));
+        tree.folders.add(tree.root);
+        if (shape == Shape.WIDE) {
+            for (int i = 0; i < entries; i++) tree.file(tree.root, i);
+            return tree;
+        }
+        Deque<Path> queue = new ArrayDeque<>();
+        queue.add(tree.root);
+        int made = 0;
+        while (made < entries && !queue.isEmpty()) {
+            Path dir = queue.poll();
+            for (int i = 0; i < FILES_PER_FOLDER && made < entries; i++, made++) tree.file(dir, made);
+            for (int i = 0; i < 2 && made < entries; i++, made++) {
+                Path sub = Files.createDirectory(dir.resolve(String.format("dir%07d", made)));
+                tree.folders.add(sub);
+                queue.add(sub);
+            }
+        }
+        return tree;
+    }
+
+    // Names are spread over the range so a listing does not come back already sorted
+    private void file(Path dir, int i) throws IOException {
+        int scrambled = (int) ((i * 2654435761L) % 10_000_000L);
+        Files.createFile(dir.resolve(String.format("file%07d.%s", scrambled, i % 3 == 0 ? "log" : "txt")));
+        files++;
+    }
+
+    public void delete() throws IOException {
+        if (!Files.exists(root)) return;
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,68 @@
+package fileexplorer.bench;
+
+import fileexplorer.core.TreeNodeIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Finding the tree node for a folder the table navigated to, the lookup behind keeping the
+// tree selection in step with the table
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeLookupBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int entries;
+
+    private SyntheticTree tree;
+    private final TreeNodeIndex<DefaultMutableTreeNode> nodes = new TreeNodeIndex<>();
+    private File[] targets;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        tree = SyntheticTree.create(entries, SyntheticTree.Shape.DEEP);
+        for (Path folder : tree.folders) nodes.put(TreeNodeIndex.keyOf(folder.toFile()), new DefaultMutableTreeNode(folder));
+        // the deepest folders are the worst case for a walk from the root
+        int count = Math.min(1024, tree.folders.size());
+        targets = new File[count];
+        for (int i = 0; i < count; i++) targets[i] = tree.folders.get(tree.folders.size() - 1 - i).toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public DefaultMutableTreeNode findNodeForFolder() {
+        File target = targets[next++ % targets.length];
+        return nodes.get(TreeNodeIndex.keyOf(target));
+    }
+
+    // a folder below anything expanded yet: the walk down to the node to expand
+    @Benchmark
+    public DefaultMutableTreeNode findClosestNode() {
+        File target = new File(targets[next++ % targets.length], "not-expanded");
+        return nodes.closest(TreeNodeIndex.keyOf(target));
+    }
+}
@@ -1,36 +1,133 @@
+import fileexplorer.cli.CommandLine;
+import fileexplorer.core.*;
+
 import javax.swing.*;
 import javax.swing.event.*;
 import javax.swing.filechooser.FileSystemView;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.tree.*;
 import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.io.*;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static fileexplorer.core.Metrics.ATTRIBUTE_READS;
+import static fileexplorer.core.Metrics.DIRECTORY_OPENS;
+import static fileexplorer.core.Metrics.METRICS;
+import static fileexplorer.core.Pools.FILE_OPS_POOL;
+import static fileexplorer.core.Pools.FOLDER_SIZE_POOL;
+import static fileexplorer.core.Pools.INDEX_POOL;
+
 public class FileExplorer extends JFrame {
+    private static final String LOADING = "Loading\u2026";
+    private static final int MAX_SEARCH_RESULTS = 2000;
+
     private final FileSystemView fileSystemView = FileSystemView.getFileSystemView();
     private JTree tree;
     private JTable table;
     private FileTableModel fileTableModel;
+    private PreviewPane previewPane;
     private JTextField pathField;
     private JTextField searchField;
+    private JComboBox<String> searchMode;
     private Deque<File> backStack = new ArrayDeque<>();
     private Deque<File> forwardStack = new ArrayDeque<>();
     private File currentDirectory;
     private JLabel statusLabel;
+    private DirectoryLoader directoryLoader;
+    // a SearchWorker, or a ContentSearchWorker when searching inside files
+    private SwingWorker<?, ?> searchWorker;
+    private final DirectoryWatcher directoryWatcher = new DirectoryWatcher(fileSystemView, this::applyDirectoryChanges);
+    private Path watchedDirectory;
+    private boolean showingSearchResults;
+    // changes that arrived while the current directory was still being listed
+    private final List<DirectoryChanges> changesDuringLoad = new ArrayList<>();
+    // expanded tree nodes, which are kept in sync with the filesystem
+    private final Map<Path, DefaultMutableTreeNode> watchedNodes = new HashMap<>();
+    private final Map<DefaultMutableTreeNode, TreeLoader> treeLoaders = new HashMap<>();
+    // every folder node in the tree, by normalized absolute path
+    private final TreeNodeIndex<DefaultMutableTreeNode> treeNodes = new TreeNodeIndex<>();
+    private Path pendingTreeSelection;
+    // set while the tree is following a navigation, so the selection does not navigate again
+    private boolean syncingTreeSelection;
+    private final ExecutorService treeProbes = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "tree-probe");
+        t.setDaemon(true);
+        return t;
+    });
+    // written on the EDT, read by the background saver
+    private final Map<File, FileIndex> searchIndexes = new ConcurrentHashMap<>();
+    private List<File> clipboardFiles;
+    private boolean clipboardCut;
+    private TransfersDialog transfersDialog;
+    private final FolderSizeCache folderSizes = new FolderSizeCache();
+    private final ListingCache listingCache = new ListingCache(64L << 20);
+    private boolean folderSizeMode;
+    private FolderSizeWorker folderSizeWorker;
+    // table order and filter picked by the user; Name ascending unfiltered is the listing as loaded
+    private int sortColumn = EntrySorter.NAME;
+    private boolean sortAscending = true;
+    private EntryFilter tableFilter = EntryFilter.NONE;
+    private JButton filterBtn;
+    private ViewWorker viewWorker;
+    private DiagnosticsDialog diagnosticsDialog;
+    // the groups on show after Find duplicates, or null
+    private List<List<File>> duplicateGroups;
+    // transfers run one job at a time, in the order they were queued
+    private final ExecutorService transferQueue = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "transfer-queue");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ScheduledExecutorService indexMaintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "index-maintenance");
+        t.setDaemon(true);
+        return t;
+    });
 
     public FileExplorer() {
         super("File System Explorer");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(1000, 650);
         setLocationRelativeTo(null);
+        addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                saveDirtyIndexes();
+            }
+        });
 
+        METRICS.register();
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new TimedEventQueue());
+        indexMaintenance.scheduleWithFixedDelay(METRICS::dump, 1, 1, TimeUnit.MINUTES);
+        directoryWatcher.start();
         initGUI();
+        loadSavedIndexes();
     }
 
     private void initGUI() {
@@ -44,6 +141,9 @@ public class FileExplorer extends JFrame {
         JButton deleteBtn = new JButton("Delete");
         JButton renameBtn = new JButton("Rename");
         JButton openBtn = new JButton("Open");
+        JButton copyBtn = new JButton("Copy");
+        JButton cutBtn = new JButton("Cut");
+        JButton pasteBtn = new JButton("Paste");
 
         backBtn.setToolTipText("Back");
         forwardBtn.setToolTipText("Forward");
@@ -53,6 +153,9 @@ public class FileExplorer extends JFrame {
         deleteBtn.setToolTipText("Delete selected");
         renameBtn.setToolTipText("Rename selected");
         openBtn.setToolTipText("Open selected");
+        copyBtn.setToolTipText("Copy selected");
+        cutBtn.setToolTipText("Cut selected");
+        pasteBtn.setToolTipText("Paste into current folder");
 
         toolBar.add(backBtn);
         toolBar.add(forwardBtn);
@@ -63,6 +166,10 @@ public class FileExplorer extends JFrame {
         toolBar.add(deleteBtn);
         toolBar.add(renameBtn);
         toolBar.add(openBtn);
+        toolBar.addSeparator();
+        toolBar.add(copyBtn);
+        toolBar.add(cutBtn);
+        toolBar.add(pasteBtn);
         toolBar.addSeparator(new Dimension(20, 0));
 
         pathField = new JTextField();
@@ -75,9 +182,26 @@ public class FileExplorer extends JFrame {
         searchField = new JTextField();
         searchField.setColumns(20);
         toolBar.add(new JLabel(" Search: "));
+        searchMode = new JComboBox<>(new String[] {"Names", "Contents"});
+        searchMode.setToolTipText("Match file names, or text inside files");
+        searchMode.setMaximumSize(searchMode.getPreferredSize());
+        toolBar.add(searchMode);
         toolBar.add(searchField);
         JButton searchBtn = new JButton("Go");
         toolBar.add(searchBtn);
+        toolBar.addSeparator();
+        JToggleButton folderSizesBtn = new JToggleButton("Folder sizes");
+        folderSizesBtn.setToolTipText("Calculate the total size of every folder shown");
+        toolBar.add(folderSizesBtn);
+        filterBtn = new JButton("Filter");
+        filterBtn.setToolTipText("Show only some types, sizes or dates");
+        toolBar.add(filterBtn);
+        JButton duplicatesBtn = new JButton("Find duplicates");
+        duplicatesBtn.setToolTipText("Find identical files under the current folder");
+        toolBar.add(duplicatesBtn);
+        JToggleButton diagnosticsBtn = new JToggleButton("Diagnostics");
+        diagnosticsBtn.setToolTipText("Show timings of filesystem work and of the UI thread");
+        toolBar.add(diagnosticsBtn);
 
         add(toolBar, BorderLayout.NORTH);
 
@@ -105,11 +229,11 @@ public class FileExplorer extends JFrame {
                 if (e.getClickCount() == 2) {
                     int row = table.getSelectedRow();
                     if (row >= 0) {
-                        File f = fileTableModel.getFileAt(row);
-                        if (f.isDirectory()) {
-                            navigateTo(f, true);
+                        FileEntry entry = fileTableModel.getEntryAt(row);
+                        if (entry.isDirectory() || Archives.isArchive(entry.getFile())) {
+                            navigateTo(entry.getFile(), true);
                         } else {
-                            openFile(f);
+                            openFile(entry.getFile());
                         }
                     }
                 }
@@ -124,9 +248,56 @@ public class FileExplorer extends JFrame {
             }
         });
 
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                int col = table.convertColumnIndexToModel(table.getTableHeader().columnAtPoint(e.getPoint()));
+                if (col < 0) return;
+                sortAscending = col != sortColumn || !sortAscending;
+                sortColumn = col;
+                updateSortHeaders();
+                refreshTableView();
+            }
+        });
+        updateSortHeaders();
+
+        FileTransferHandler transferHandler = new FileTransferHandler();
+        table.setDragEnabled(true);
+        table.setDropMode(DropMode.ON);
+        table.setTransferHandler(transferHandler);
+        tree.setDragEnabled(true);
+        tree.setDropMode(DropMode.ON);
+        tree.setTransferHandler(transferHandler);
+
         JScrollPane tableScroll = new JScrollPane(table);
 
-        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, treeScroll, tableScroll);
+        // Preview of the selected row; a preview still decoding is dropped once its row scrolls away
+        previewPane = new PreviewPane();
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (e.getValueIsAdjusting()) return;
+            updatePreview();
+            prefetchRow(table.getSelectedRow());
+        });
+        // a folder under the mouse is a likely next double-click
+        table.addMouseMotionListener(new MouseMotionAdapter() {
+            private int hovered = -1;
+
+            public void mouseMoved(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                if (row == hovered) return;
+                hovered = row;
+                prefetchRow(row);
+            }
+        });
+        tableScroll.getViewport().addChangeListener(e -> {
+            int row = table.getSelectedRow();
+            if (row < 0) return;
+            if (table.getVisibleRect().intersects(table.getCellRect(row, 0, true))) updatePreview();
+            else previewPane.cancelPending();
+        });
+        JSplitPane contentSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, tableScroll, previewPane);
+        contentSplit.setResizeWeight(1.0);
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, treeScroll, contentSplit);
         splitPane.setDividerLocation(300);
 
         add(splitPane, BorderLayout.CENTER);
@@ -148,8 +319,25 @@ public class FileExplorer extends JFrame {
         deleteBtn.addActionListener(e -> deleteSelected());
         renameBtn.addActionListener(e -> renameSelected());
         openBtn.addActionListener(e -> openSelected());
+        copyBtn.addActionListener(e -> copySelected(false));
+        cutBtn.addActionListener(e -> copySelected(true));
+        pasteBtn.addActionListener(e -> pasteFromClipboard());
         searchBtn.addActionListener(e -> doSearch());
         searchField.addActionListener(e -> doSearch());
+        folderSizesBtn.addActionListener(e -> setFolderSizeMode(folderSizesBtn.isSelected()));
+        filterBtn.addActionListener(e -> showFilterDialog());
+        duplicatesBtn.addActionListener(e -> findDuplicates());
+        diagnosticsBtn.addActionListener(e -> {
+            if (diagnosticsDialog == null) {
+                diagnosticsDialog = new DiagnosticsDialog(this);
+                diagnosticsDialog.addWindowListener(new WindowAdapter() {
+                    public void windowClosing(WindowEvent we) {
+                        diagnosticsBtn.setSelected(false);
+                    }
+                });
+            }
+            diagnosticsDialog.setVisible(diagnosticsBtn.isSelected());
+        });
 
         // Initialize to user's home
         File home = fileSystemView.getHomeDirectory();
@@ -163,6 +351,7 @@ public class FileExplorer extends JFrame {
         for (File root : roots) {
             DefaultMutableTreeNode node = new DefaultMutableTreeNode(new FileNode(root));
             rootWrapper.add(node);
+            treeNodes.put(pathOf(node), node);
             // lazily add dummy child so node is expandable
             node.add(new DefaultMutableTreeNode(Boolean.TRUE));
         }
@@ -170,6 +359,32 @@ public class FileExplorer extends JFrame {
     }
 
     private void expandTreeRoot(JTree tree) {
+        // Add tree expansion listener to populate nodes lazily
+        tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            public void treeWillExpand(TreeExpansionEvent event) throws ExpandVetoException {
+                DefaultMutableTreeNode node = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
+                loadChildren(node);
+            }
+
+            public void treeWillCollapse(TreeExpansionEvent event) throws ExpandVetoException {}
+        });
+
+        // Keep expanded folders live; collapsing drops the watches for the whole branch
+        tree.addTreeExpansionListener(new TreeExpansionListener() {
+            public void treeExpanded(TreeExpansionEvent event) {
+                DefaultMutableTreeNode node = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
+                Path dir = pathOf(node);
+                if (dir == null || Archives.isArchiveFolder(dir.toFile())) return;
+                if (watchedNodes.put(dir, node) == null) directoryWatcher.watch(dir);
+            }
+
+            public void treeCollapsed(TreeExpansionEvent event) {
+                DefaultMutableTreeNode node = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
+                unwatchBranch(node);
+            }
+        });
+
+        // Listeners first, so the drives load like any other expanded folder
         TreeModel model = tree.getModel();
         DefaultMutableTreeNode root = (DefaultMutableTreeNode) model.getRoot();
         Enumeration<?> e = root.children();
@@ -178,37 +393,118 @@ public class FileExplorer extends JFrame {
             TreePath path = new TreePath(node.getPath());
             tree.expandPath(path);
         }
+    }
 
-        // Add tree expansion listener to populate nodes lazily
-        tree.addTreeWillExpandListener(new TreeWillExpandListener() {
-            public void treeWillExpand(TreeExpansionEvent event) throws ExpandVetoException {
-                DefaultMutableTreeNode node = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
-                loadChildren(node);
+    private void unwatchBranch(DefaultMutableTreeNode node) {
+        for (Iterator<Map.Entry<Path, DefaultMutableTreeNode>> it = watchedNodes.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, DefaultMutableTreeNode> e = it.next();
+            if (e.getValue() == node || e.getValue().isNodeAncestor(node)) {
+                directoryWatcher.unwatch(e.getKey());
+                it.remove();
             }
+        }
+    }
 
-            public void treeWillCollapse(TreeExpansionEvent event) throws ExpandVetoException {}
-        });
+    private static Path pathOf(DefaultMutableTreeNode node) {
+        Object u = node.getUserObject();
+        return u instanceof FileNode ? TreeNodeIndex.keyOf(((FileNode) u).getFile()) : null;
     }
 
     private void loadChildren(DefaultMutableTreeNode node) {
         Object userObj = node.getUserObject();
-        if (userObj instanceof FileNode) {
-            FileNode fn = (FileNode) userObj;
-            File file = fn.getFile();
-            node.removeAllChildren();
-            File[] files = fileSystemView.getFiles(file, false);
-            if (files == null) return;
-            Arrays.sort(files, Comparator.comparing(File::getName, String.CASE_INSENSITIVE_ORDER));
-            for (File f : files) {
-                if (f.isDirectory()) {
-                    DefaultMutableTreeNode child = new DefaultMutableTreeNode(new FileNode(f));
-                    // add dummy so it can be expanded later
-                    child.add(new DefaultMutableTreeNode(Boolean.TRUE));
-                    node.add(child);
-                }
+        if (!(userObj instanceof FileNode) || treeLoaders.containsKey(node)) return;
+        if (!hasLoadedChildren(node)) {
+            // first expansion: swap the expand-handle dummy for a visible placeholder
+            DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
+            removeChildren(node, child -> true);
+            node.add(new DefaultMutableTreeNode(LOADING));
+            model.nodesWereInserted(node, new int[] {0});
+        }
+        TreeLoader loader = new TreeLoader(node, ((FileNode) userObj).getFile());
+        treeLoaders.put(node, loader);
+        loader.execute();
+    }
+
+    private static boolean hasLoadedChildren(DefaultMutableTreeNode node) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (((DefaultMutableTreeNode) node.getChildAt(i)).getUserObject() instanceof FileNode) return true;
+        }
+        return node.getChildCount() == 0;
+    }
+
+    // Brings a parent's folder nodes in line with a fresh listing; surviving nodes keep their state
+    private void applyTreeChildren(DefaultMutableTreeNode node, List<TreeChild> children) {
+        Set<String> names = new HashSet<>();
+        for (TreeChild c : children) names.add(c.file.getName());
+        removeChildren(node, child -> !(child.getUserObject() instanceof FileNode)
+                || !names.contains(((FileNode) child.getUserObject()).getFile().getName()));
+        insertDirectoryNodes(node, children);
+    }
+
+    private void removeDirectoryNodes(DefaultMutableTreeNode node, Predicate<DefaultMutableTreeNode> gone) {
+        removeChildren(node, child -> child.getUserObject() instanceof FileNode && gone.test(child));
+    }
+
+    private void removeChildren(DefaultMutableTreeNode node, Predicate<DefaultMutableTreeNode> gone) {
+        List<Integer> indices = new ArrayList<>();
+        List<Object> removed = new ArrayList<>();
+        for (int i = node.getChildCount() - 1; i >= 0; i--) {
+            DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(i);
+            if (!gone.test(child)) continue;
+            unwatchBranch(child);
+            forgetTreeNodes(child);
+            node.remove(i);
+            indices.add(0, i);
+            removed.add(0, child);
+        }
+        if (!indices.isEmpty()) {
+            ((DefaultTreeModel) tree.getModel()).nodesWereRemoved(node,
+                    indices.stream().mapToInt(Integer::intValue).toArray(), removed.toArray());
+        }
+    }
+
+    // Merges sorted folders into a parent whose folder children are sorted the same way
+    private void insertDirectoryNodes(DefaultMutableTreeNode node, List<TreeChild> sorted) {
+        List<Integer> inserted = new ArrayList<>();
+        int at = 0;
+        for (TreeChild c : sorted) {
+            int cmp = -1;
+            for (; at < node.getChildCount(); at++) {
+                Object u = ((DefaultMutableTreeNode) node.getChildAt(at)).getUserObject();
+                if (!(u instanceof FileNode)) continue;
+                cmp = TreeChild.FILE_ORDER.compare(((FileNode) u).getFile(), c.file);
+                if (cmp >= 0) break;
             }
-            ((DefaultTreeModel) tree.getModel()).reload(node);
+            if (cmp == 0 && at < node.getChildCount()) continue; // already there
+            node.insert(newDirectoryNode(c), at);
+            inserted.add(at++);
         }
+        if (!inserted.isEmpty()) {
+            ((DefaultTreeModel) tree.getModel()).nodesWereInserted(node,
+                    inserted.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private DefaultMutableTreeNode newDirectoryNode(TreeChild c) {
+        DefaultMutableTreeNode child = new DefaultMutableTreeNode(new FileNode(c.file));
+        treeNodes.put(pathOf(child), child);
+        if (Boolean.FALSE.equals(c.hasSubdirectories)) return child;
+        // add dummy so it can be expanded later
+        child.add(new DefaultMutableTreeNode(Boolean.TRUE));
+        if (c.hasSubdirectories == null) probeSubdirectories(child, c.file);
+        return child;
+    }
+
+    // Unknown link count: look for a subfolder in the background and drop the handle if none
+    private void probeSubdirectories(DefaultMutableTreeNode node, File dir) {
+        treeProbes.execute(() -> {
+            if (node.getParent() == null || TreeChild.hasSubdirectory(dir)) return;
+            SwingUtilities.invokeLater(() -> {
+                if (node.getParent() == null || node.getChildCount() != 1) return;
+                DefaultMutableTreeNode only = (DefaultMutableTreeNode) node.getFirstChild();
+                if (Boolean.TRUE.equals(only.getUserObject())) removeChildren(node, child -> true);
+            });
+        });
     }
 
     private void onTreeSelection(TreeSelectionEvent e) {
@@ -216,14 +512,14 @@ public class FileExplorer extends JFrame {
         if (path == null) return;
         DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
         Object u = node.getUserObject();
-        if (u instanceof FileNode) {
+        if (u instanceof FileNode && !syncingTreeSelection) {
             File f = ((FileNode) u).getFile();
             navigateTo(f, true);
         }
     }
 
     private void navigateTo(File dir, boolean pushHistory) {
-        if (dir == null || !dir.exists()) return;
+        if (dir == null || !Archives.exists(dir)) return;
         try {
             dir = dir.getCanonicalFile();
         } catch (IOException ex) {
@@ -235,44 +531,90 @@ public class FileExplorer extends JFrame {
         }
         currentDirectory = dir;
         pathField.setText(dir.getAbsolutePath());
-        File[] files = fileSystemView.getFiles(dir, true); // show hidden files too? false if you don't want
-        Arrays.sort(files, Comparator.comparing(File::getName, String.CASE_INSENSITIVE_ORDER));
-        fileTableModel.setFiles(Arrays.asList(files));
-        statusLabel.setText("Showing " + files.length + " items in " + dir.getAbsolutePath());
+        loadDirectory(dir);
         // Expand tree selection to this node if present
         selectTreeNodeForFile(dir);
     }
 
-    private void selectTreeNodeForFile(File dir) {
-        TreeModel model = tree.getModel();
-        DefaultMutableTreeNode root = (DefaultMutableTreeNode) model.getRoot();
-        DefaultMutableTreeNode match = findNodeForFile(root, dir);
-        if (match != null) {
-            TreePath path = new TreePath(match.getPath());
-            tree.setSelectionPath(path);
-            tree.scrollPathToVisible(path);
+    private void loadDirectory(File dir) {
+        // A newer navigation always wins: drop whatever listing is still in flight
+        if (directoryLoader != null) directoryLoader.cancel(true);
+        if (searchWorker != null) searchWorker.cancel(true);
+        if (folderSizeWorker != null) folderSizeWorker.cancel(true);
+        if (viewWorker != null) viewWorker.cancel(true);
+        viewWorker = null;
+        showingSearchResults = false;
+        duplicateGroups = null;
+        changesDuringLoad.clear();
+        // watch before listing so nothing created in between is missed; archives are
+        // read-only here, so there is nothing to watch inside one
+        Path path = Archives.isArchiveFolder(dir) ? null : dir.toPath();
+        if (!Objects.equals(path, watchedDirectory)) {
+            if (watchedDirectory != null) directoryWatcher.unwatch(watchedDirectory);
+            if (path != null) directoryWatcher.watch(path);
+            watchedDirectory = path;
         }
+        // a folder seen before shows at once; the loader then checks it is still current
+        ListingCache.Snapshot cached = listingCache.get(dir);
+        directoryLoader = new DirectoryLoader(dir, cached);
+        if (cached != null) {
+            fileTableModel.setColumns(cached.columns, cached.order, cached.order.length);
+            METRICS.time("navigate", directoryLoader.startNanos);
+            statusLabel.setText("Showing " + cached.order.length + " items in " + dir.getAbsolutePath());
+        } else {
+            fileTableModel.setColumns(directoryLoader.columns, null, 0);
+            statusLabel.setText("Loading " + dir.getAbsolutePath() + " ...");
+        }
+        updateSortHeaders();
+        directoryLoader.execute();
     }
 
-    private DefaultMutableTreeNode findNodeForFile(DefaultMutableTreeNode node, File target) {
-        Object obj = node.getUserObject();
-        if (obj instanceof FileNode) {
-            File nFile = ((FileNode) obj).getFile();
-            try {
-                if (nFile.getCanonicalPath().equals(target.getCanonicalPath())) {
-                    return node;
-                }
-            } catch (IOException e) {
-                // ignore
+    private void prefetchRow(int row) {
+        if (row < 0 || row >= fileTableModel.getRowCount() || !fileTableModel.isDirectoryAt(row)) return;
+        listingCache.prefetch(fileTableModel.getFileAt(row));
+    }
+
+    // Lists the folders the user is likely to open next: back, forward and up
+    private void prefetchNeighbours() {
+        if (!backStack.isEmpty()) listingCache.prefetch(backStack.peek());
+        if (!forwardStack.isEmpty()) listingCache.prefetch(forwardStack.peek());
+        if (currentDirectory != null) listingCache.prefetch(currentDirectory.getParentFile());
+    }
+
+    // Walks down from the filesystem root through the node index, expanding (and so loading)
+    // the first ancestor that is not in the tree yet; its loader resumes the walk when done
+    private void selectTreeNodeForFile(File dir) {
+        Path target = TreeNodeIndex.keyOf(dir);
+        pendingTreeSelection = null;
+        DefaultMutableTreeNode match = treeNodes.get(target);
+        if (match == null) {
+            DefaultMutableTreeNode node = treeNodes.closest(target);
+            if (node == null) return;
+            // a collapsed folder is re-listed on expansion; an expanded, loaded one really lacks it
+            TreePath parentPath = new TreePath(node.getPath());
+            if (treeLoaders.containsKey(node) || !tree.isExpanded(parentPath)) {
+                pendingTreeSelection = target;
+                tree.expandPath(parentPath);
             }
+            return;
+        }
+        TreePath path = new TreePath(match.getPath());
+        syncingTreeSelection = true;
+        try {
+            tree.setSelectionPath(path);
+        } finally {
+            syncingTreeSelection = false;
         }
-        Enumeration<?> en = node.children();
+        tree.scrollPathToVisible(path);
+    }
+
+    private void forgetTreeNodes(DefaultMutableTreeNode branch) {
+        Enumeration<?> en = branch.breadthFirstEnumeration();
         while (en.hasMoreElements()) {
-            DefaultMutableTreeNode child = (DefaultMutableTreeNode) en.nextElement();
-            DefaultMutableTreeNode found = findNodeForFile(child, target);
-            if (found != null) return found;
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode) en.nextElement();
+            Path p = pathOf(node);
+            if (p != null) treeNodes.remove(p, node);
         }
-        return null;
     }
 
     private void goBack() {
@@ -290,11 +632,205 @@ public class FileExplorer extends JFrame {
     }
 
     private void refreshCurrentDirectory() {
-        if (currentDirectory != null) navigateTo(currentDirectory, false);
+        if (currentDirectory == null) return;
+        // a refresh lists again even if no entry came or went, to pick up changed sizes and dates
+        listingCache.forget(currentDirectory);
+        navigateTo(currentDirectory, false);
+    }
+
+    private void setFolderSizeMode(boolean on) {
+        folderSizeMode = on;
+        fileTableModel.setFolderSizes(on ? folderSizes : null);
+        if (on) {
+            startFolderSizes();
+        } else if (folderSizeWorker != null) {
+            folderSizeWorker.cancel(true);
+            folderSizeWorker = null;
+        }
+    }
+
+    private void startFolderSizes() {
+        if (!folderSizeMode || showingSearchResults || directoryLoader != null) return;
+        if (currentDirectory != null && Archives.isArchiveFolder(currentDirectory)) return;
+        if (folderSizeWorker != null) folderSizeWorker.cancel(true);
+        List<Path> dirs = new ArrayList<>();
+        for (int i = 0; i < fileTableModel.getRowCount(); i++) {
+            if (fileTableModel.isDirectoryAt(i)) dirs.add(fileTableModel.getFileAt(i).toPath());
+        }
+        folderSizeWorker = new FolderSizeWorker(dirs);
+        folderSizeWorker.execute();
+    }
+
+    private void applyDirectoryChanges(List<DirectoryChanges> batch) {
+        for (DirectoryChanges changes : batch) {
+            if (changes.dir.equals(watchedDirectory) && !showingSearchResults) {
+                if (directoryLoader != null) changesDuringLoad.add(changes);
+                else applyToTable(changes);
+            }
+            DefaultMutableTreeNode node = watchedNodes.get(changes.dir.toAbsolutePath().normalize());
+            if (node != null) applyToTree(node, changes);
+        }
+    }
+
+    // Applies row-level inserts/deletes, keeping the selection and the rows in view where they were
+    private void applyToTable(DirectoryChanges changes) {
+        if (changes.overflow) {
+            loadDirectory(currentDirectory);
+            return;
+        }
+        JViewport viewport = (JViewport) table.getParent();
+        Rectangle visible = table.getVisibleRect();
+        int top = table.rowAtPoint(visible.getLocation());
+        FileEntry anchor = top >= 0 ? fileTableModel.getEntryAt(top) : null;
+        int offset = top >= 0 ? visible.y - table.getCellRect(top, 0, true).y : 0;
+
+        fileTableModel.removeNames(changes.deleted);
+        List<FileEntry> shown = new ArrayList<>();
+        for (FileEntry e : changes.created) {
+            if (!e.isHidden()) shown.add(e);
+        }
+        fileTableModel.mergeEntries(shown);
+        fileTableModel.mergeEntries(changes.modified);
+        for (FileEntry e : shown) {
+            if (e.isDirectory()) {
+                startFolderSizes();
+                break;
+            }
+        }
+
+        if (fileTableModel.hasView()) {
+            // the sorted view catches up with the change once it is recomputed
+            refreshTableView();
+            return;
+        }
+        if (anchor != null) {
+            int row = fileTableModel.indexOf(anchor.getName());
+            if (row >= 0) viewport.setViewPosition(new Point(visible.x, table.getCellRect(row, 0, true).y + offset));
+        }
+        statusLabel.setText("Showing " + fileTableModel.getRowCount() + " items in " + currentDirectory.getAbsolutePath());
+    }
+
+    // Replaces the listing on screen with a newer one of the same folder, keeping the selected
+    // files and the row at the top of the view where they were
+    private void swapColumns(EntryColumns columns, int[] order) {
+        JViewport viewport = (JViewport) table.getParent();
+        Rectangle visible = table.getVisibleRect();
+        int top = table.rowAtPoint(visible.getLocation());
+        String anchor = top >= 0 ? fileTableModel.getFileAt(top).getName() : null;
+        int offset = top >= 0 ? visible.y - table.getCellRect(top, 0, true).y : 0;
+        Set<String> selected = new HashSet<>();
+        for (int row : table.getSelectedRows()) selected.add(fileTableModel.getFileAt(row).getName());
+
+        fileTableModel.setColumns(columns, order, order.length);
+
+        for (String name : selected) {
+            int row = fileTableModel.rowOf(name);
+            if (row >= 0) table.addRowSelectionInterval(row, row);
+        }
+        int row = anchor != null ? fileTableModel.rowOf(anchor) : -1;
+        if (row >= 0) viewport.setViewPosition(new Point(visible.x, table.getCellRect(row, 0, true).y + offset));
+    }
+
+    private void updatePreview() {
+        int row = table.getSelectedRow();
+        if (row < 0 || row >= fileTableModel.getRowCount()) {
+            previewPane.show(null, false, 0, 0);
+            return;
+        }
+        FileEntry e = fileTableModel.getEntryAt(row);
+        previewPane.show(e.getFile(), e.isDirectory(), e.getSize(), e.getLastModified());
+    }
+
+    private void updateSortHeaders() {
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            int col = table.convertColumnIndexToModel(i);
+            String arrow = col == sortColumn ? (sortAscending ? " \u25B2" : " \u25BC") : "";
+            table.getColumnModel().getColumn(i).setHeaderValue(fileTableModel.getColumnName(col) + arrow);
+        }
+        table.getTableHeader().repaint();
+    }
+
+    // Recomputes the sorted and filtered view in the background; the listing's own order needs none
+    private void refreshTableView() {
+        if (viewWorker != null) viewWorker.cancel(true);
+        viewWorker = null;
+        filterBtn.setText(tableFilter.isEmpty() ? "Filter" : "Filter (on)");
+        if (sortColumn == EntrySorter.NAME && sortAscending && tableFilter.isEmpty()) {
+            fileTableModel.clearView();
+            return;
+        }
+        // listings still coming in are sorted once they are complete
+        if (directoryLoader != null || searchWorker != null) return;
+        viewWorker = new ViewWorker();
+        viewWorker.execute();
+    }
+
+    private void showFilterDialog() {
+        JComboBox<EntryFilter.Kind> kind = new JComboBox<>(EntryFilter.Kind.values());
+        kind.setSelectedItem(tableFilter.kind);
+        JTextField extensions = new JTextField(String.join(" ", tableFilter.extensions), 15);
+        JTextField minSize = new JTextField(tableFilter.minSize >= 0 ? String.valueOf(tableFilter.minSize) : "", 8);
+        JTextField maxSize = new JTextField(tableFilter.maxSize >= 0 ? String.valueOf(tableFilter.maxSize) : "", 8);
+        String[] ages = {"Any time", "Past day", "Past week", "Past month", "Past year"};
+        long[] ageMillis = {0, TimeUnit.DAYS.toMillis(1), TimeUnit.DAYS.toMillis(7), TimeUnit.DAYS.toMillis(30), TimeUnit.DAYS.toMillis(365)};
+        JComboBox<String> age = new JComboBox<>(ages);
+        for (int i = 0; i < ageMillis.length; i++) {
+            if (ageMillis[i] == tableFilter.maxAgeMillis) age.setSelectedIndex(i);
+        }
+        JPanel panel = new JPanel(new GridLayout(0, 2, 6, 4));
+        panel.add(new JLabel("Show:"));
+        panel.add(kind);
+        panel.add(new JLabel("Extensions (e.g. jpg png):"));
+        panel.add(extensions);
+        panel.add(new JLabel("Minimum size (e.g. 64K):"));
+        panel.add(minSize);
+        panel.add(new JLabel("Maximum size (e.g. 1.5 GB):"));
+        panel.add(maxSize);
+        panel.add(new JLabel("Modified:"));
+        panel.add(age);
+
+        String[] options = {"Apply", "Clear", "Cancel"};
+        int choice = JOptionPane.showOptionDialog(this, panel, "Filter", JOptionPane.DEFAULT_OPTION,
+                JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+        if (choice == 1) {
+            tableFilter = EntryFilter.NONE;
+        } else if (choice == 0) {
+            Set<String> exts = new TreeSet<>();
+            for (String ext : extensions.getText().split("[\\s,;]+")) {
+                ext = ext.trim().toLowerCase(Locale.ROOT);
+                while (ext.startsWith("*") || ext.startsWith(".")) ext = ext.substring(1);
+                if (!ext.isEmpty()) exts.add(ext);
+            }
+            try {
+                tableFilter = new EntryFilter((EntryFilter.Kind) kind.getSelectedItem(), exts,
+                        EntryFilter.parseSize(minSize.getText()), EntryFilter.parseSize(maxSize.getText()),
+                        ageMillis[age.getSelectedIndex()]);
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Sizes must be a number, optionally followed by K, M, G or T.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+        } else {
+            return;
+        }
+        refreshTableView();
+    }
+
+    private void applyToTree(DefaultMutableTreeNode node, DirectoryChanges changes) {
+        if (changes.overflow) {
+            loadChildren(node);
+            return;
+        }
+        removeDirectoryNodes(node, child -> changes.deleted.contains(((FileNode) child.getUserObject()).getFile().getName()));
+        List<TreeChild> created = new ArrayList<>();
+        for (FileEntry e : changes.created) {
+            if (e.isDirectory()) created.add(new TreeChild(e.getFile(), null));
+        }
+        created.sort(TreeChild.ORDER);
+        insertDirectoryNodes(node, created);
     }
 
     private void createNewFolder() {
-        if (currentDirectory == null) return;
+        if (currentDirectory == null || refuseArchiveChange(currentDirectory)) return;
         String name = JOptionPane.showInputDialog(this, "New folder name:", "Create Folder", JOptionPane.PLAIN_MESSAGE);
         if (name == null || name.trim().isEmpty()) return;
         File newDir = new File(currentDirectory, name.trim());
@@ -315,34 +851,245 @@ public class FileExplorer extends JFrame {
             JOptionPane.showMessageDialog(this, "No selection to delete.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
+        if (refuseArchiveChange(fileTableModel.getFileAt(rows[0]).getParentFile())) return;
         int confirm = JOptionPane.showConfirmDialog(this, "Delete selected item(s)? This cannot be undone.", "Confirm Delete", JOptionPane.YES_NO_OPTION);
         if (confirm != JOptionPane.YES_OPTION) return;
-        for (int r : rows) {
-            File f = fileTableModel.getFileAt(r);
-            try {
-                if (f.isDirectory()) {
-                    deleteDirectoryRecursively(f.toPath());
-                } else {
-                    Files.deleteIfExists(f.toPath());
+        List<Path> targets = new ArrayList<>();
+        for (int r : rows) targets.add(fileTableModel.getFileAt(r).toPath());
+        DeleteOperation op = new DeleteOperation(targets);
+        ProgressDialog progress = new ProgressDialog(this, "Deleting", op::progress, op::cancel);
+        new SwingWorker<OperationReport, Void>() {
+            @Override
+            protected OperationReport doInBackground() {
+                long start = System.nanoTime();
+                try {
+                    return op.run();
+                } finally {
+                    METRICS.time("delete", start);
+                }
+            }
+
+            @Override
+            protected void done() {
+                progress.dispose();
+                try {
+                    showOperationReport(get());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(FileExplorer.this, "Delete failed: " + ex.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+                if (duplicateGroups != null) showDuplicates(withoutDeleted(duplicateGroups));
+                else refreshCurrentDirectory();
+            }
+        }.execute();
+        progress.setVisible(true);
+    }
+
+    private void findDuplicates() {
+        if (currentDirectory == null) return;
+        if (Archives.isArchiveFolder(currentDirectory)) {
+            statusLabel.setText("Duplicates are not looked for inside archives");
+            return;
+        }
+        if (directoryLoader != null) directoryLoader.cancel(true);
+        if (searchWorker != null) searchWorker.cancel(true);
+        if (folderSizeWorker != null) folderSizeWorker.cancel(true);
+        showingSearchResults = true;
+        duplicateGroups = null;
+        File scope = currentDirectory;
+        DuplicateFinder finder = new DuplicateFinder(scope);
+        ProgressDialog progress = new ProgressDialog(this, "Finding duplicates in " + scope.getName(), finder::progress, finder::cancel);
+        SwingWorker<List<List<File>>, Void> worker = new SwingWorker<List<List<File>>, Void>() {
+            @Override
+            protected List<List<File>> doInBackground() throws Exception {
+                long start = System.nanoTime();
+                ForkJoinTask<List<List<File>>> run = INDEX_POOL.submit(finder::run);
+                try {
+                    List<List<File>> groups = run.get();
+                    METRICS.time("duplicates", start);
+                    return groups;
+                } catch (InterruptedException ex) {
+                    finder.cancel();
+                    throw ex;
+                }
+            }
+
+            @Override
+            protected void done() {
+                progress.dispose();
+                if (isCancelled() || searchWorker != this) return;
+                searchWorker = null;
+                try {
+                    List<List<File>> groups = get();
+                    if (finder.isCancelled()) statusLabel.setText("Duplicate search cancelled");
+                    else showDuplicates(groups);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(FileExplorer.this, "Duplicate search failed: " + ex.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 }
+            }
+        };
+        searchWorker = worker;
+        fileTableModel.setEntries(Collections.<FileEntry>emptyList());
+        statusLabel.setText("Finding duplicates in " + scope.getAbsolutePath() + " ...");
+        worker.execute();
+        progress.setVisible(true);
+    }
+
+    // Lists the groups one after another; each row says which group it belongs to
+    private void showDuplicates(List<List<File>> groups) {
+        duplicateGroups = groups;
+        List<FileEntry> entries = new ArrayList<>();
+        for (List<File> group : groups) {
+            for (File f : group) entries.add(FileEntry.read(f, fileSystemView));
+        }
+        fileTableModel.setEntries(entries);
+        fileTableModel.showDetails("Duplicates");
+        long wasted = 0;
+        for (int g = 0; g < groups.size(); g++) {
+            List<File> group = groups.get(g);
+            long size = group.get(0).length();
+            wasted += size * (group.size() - 1);
+            String text = "Group " + (g + 1) + " of " + groups.size() + ": " + group.size() + " copies";
+            for (File f : group) fileTableModel.putDetail(f, text);
+        }
+        updateSortHeaders();
+        refreshTableView();
+        statusLabel.setText(groups.isEmpty() ? "No duplicates under " + currentDirectory.getAbsolutePath()
+                : entries.size() + " files in " + groups.size() + " groups of duplicates, "
+                        + FileEntry.readableFileSize(wasted) + " in extra copies");
+    }
+
+    private static List<List<File>> withoutDeleted(List<List<File>> groups) {
+        List<List<File>> left = new ArrayList<>();
+        for (List<File> group : groups) {
+            List<File> existing = new ArrayList<>();
+            for (File f : group) {
+                if (f.exists()) existing.add(f);
+            }
+            if (existing.size() > 1) left.add(existing);
+        }
+        return left;
+    }
+
+    // Selects every copy but the first of each group, ready for Delete
+    private void selectExtraCopies() {
+        Set<File> extra = new HashSet<>();
+        for (List<File> group : duplicateGroups) extra.addAll(group.subList(1, group.size()));
+        table.clearSelection();
+        for (int r = 0; r < fileTableModel.getRowCount(); r++) {
+            if (extra.contains(fileTableModel.getFileAt(r))) table.addRowSelectionInterval(r, r);
+        }
+    }
+
+    private List<File> selectedFiles() {
+        List<File> files = new ArrayList<>();
+        for (int r : table.getSelectedRows()) files.add(fileTableModel.getFileAt(r));
+        return files;
+    }
+
+    private List<File> selectedTreeFiles() {
+        List<File> files = new ArrayList<>();
+        TreePath[] paths = tree.getSelectionPaths();
+        if (paths == null) return files;
+        for (TreePath path : paths) {
+            Object u = ((DefaultMutableTreeNode) path.getLastPathComponent()).getUserObject();
+            if (u instanceof FileNode) files.add(((FileNode) u).getFile());
+        }
+        return files;
+    }
+
+    private void copySelected(boolean cut) {
+        List<File> files = selectedFiles();
+        if (files.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No selection to " + (cut ? "cut." : "copy."), "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        clipboardFiles = files;
+        clipboardCut = cut;
+        try {
+            getToolkit().getSystemClipboard().setContents(new FileListTransferable(files), null);
+        } catch (IllegalStateException ex) {
+            // system clipboard busy: pasting inside the explorer still works
+        }
+        statusLabel.setText((cut ? "Cut " : "Copied ") + files.size() + " item(s)");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void pasteFromClipboard() {
+        if (currentDirectory == null) return;
+        List<File> files = clipboardFiles;
+        try {
+            Transferable t = getToolkit().getSystemClipboard().getContents(null);
+            if (t != null && t.isDataFlavorSupported(DataFlavor.javaFileListFlavor)) {
+                files = (List<File>) t.getTransferData(DataFlavor.javaFileListFlavor);
+            }
+        } catch (IllegalStateException | UnsupportedFlavorException | IOException ex) {
+            // fall back to what was copied here
+        }
+        if (files == null || files.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Nothing to paste.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        // the system clipboard has no notion of cut, so a move needs our own cut to be the one pasted
+        boolean move = clipboardCut && files.equals(clipboardFiles);
+        startTransfer(files, currentDirectory, move);
+        if (move) {
+            clipboardFiles = null;
+            clipboardCut = false;
+        }
+    }
+
+    private void startTransfer(List<File> files, File targetDir, boolean move) {
+        if (refuseArchiveChange(targetDir)) return;
+        for (File f : files) {
+            if (move && refuseArchiveChange(f.getParentFile())) return;
+        }
+        // copying out of an archive streams the entries straight from it, so the archive
+        // stays mounted until the job is over
+        List<Archives.Handle> handles = new ArrayList<>();
+        List<Path> sources = new ArrayList<>();
+        for (File f : files) {
+            try {
+                Archives.Handle source = Archives.open(f);
+                handles.add(source);
+                sources.add(source.path().toAbsolutePath().normalize());
             } catch (IOException ex) {
-                JOptionPane.showMessageDialog(this, "Failed to delete: " + f.getName() + " (" + ex.getMessage() + ")", "Error", JOptionPane.ERROR_MESSAGE);
+                handles.forEach(Archives.Handle::close);
+                JOptionPane.showMessageDialog(this, "Cannot read " + f + ": " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
         }
-        refreshCurrentDirectory();
+        TransferJob job = new TransferJob(sources, targetDir.toPath().toAbsolutePath().normalize(), move);
+        if (transfersDialog == null) transfersDialog = new TransfersDialog(this);
+        transfersDialog.add(job);
+        transfersDialog.setVisible(true);
+        transferQueue.execute(() -> {
+            OperationReport report;
+            try {
+                report = job.run();
+            } finally {
+                handles.forEach(Archives.Handle::close);
+            }
+            SwingUtilities.invokeLater(() -> {
+                showOperationReport(report);
+                // with a watcher the table has followed along already
+                if (!directoryWatcher.isActive()) refreshCurrentDirectory();
+            });
+        });
     }
 
-    private void deleteDirectoryRecursively(Path dir) throws IOException {
-        if (!Files.exists(dir)) return;
-        Files.walk(dir)
-                .sorted(Comparator.reverseOrder())
-                .forEach(p -> {
-                    try {
-                        Files.deleteIfExists(p);
-                    } catch (IOException ex) {
-                        // ignore per-file errors here
-                    }
-                });
+    private void showOperationReport(OperationReport report) {
+        statusLabel.setText(report.summary());
+        if (report.errors.isEmpty()) return;
+        StringBuilder sb = new StringBuilder();
+        for (String error : report.errors) sb.append(error).append("\n");
+        JTextArea text = new JTextArea(sb.toString(), 15, 70);
+        text.setEditable(false);
+        JOptionPane.showMessageDialog(this, new Object[] {report.summary(), new JScrollPane(text)},
+                "Errors", JOptionPane.ERROR_MESSAGE);
     }
 
     private void renameSelected() {
@@ -352,6 +1099,7 @@ public class FileExplorer extends JFrame {
             return;
         }
         File f = fileTableModel.getFileAt(row);
+        if (refuseArchiveChange(f.getParentFile())) return;
         String newName = JOptionPane.showInputDialog(this, "Rename to:", f.getName());
         if (newName == null || newName.trim().isEmpty()) return;
         File dest = new File(f.getParentFile(), newName.trim());
@@ -372,12 +1120,16 @@ public class FileExplorer extends JFrame {
             JOptionPane.showMessageDialog(this, "Select an item to open.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
-        File f = fileTableModel.getFileAt(row);
-        if (f.isDirectory()) navigateTo(f, true);
-        else openFile(f);
+        FileEntry entry = fileTableModel.getEntryAt(row);
+        if (entry.isDirectory() || Archives.isArchive(entry.getFile())) navigateTo(entry.getFile(), true);
+        else openFile(entry.getFile());
     }
 
     private void openFile(File f) {
+        if (Archives.containingArchive(f) != null) {
+            openArchiveEntry(f);
+            return;
+        }
         try {
             if (Desktop.isDesktopSupported()) {
                 Desktop.getDesktop().open(f);
@@ -389,22 +1141,145 @@ public class FileExplorer extends JFrame {
         }
     }
 
+    // Other applications cannot see inside an archive: stream the entry out to a temporary file first
+    private void openArchiveEntry(File entry) {
+        statusLabel.setText("Extracting " + entry.getName() + " ...");
+        new SwingWorker<File, Void>() {
+            @Override
+            protected File doInBackground() throws IOException {
+                return Archives.extract(entry);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    File extracted = get();
+                    statusLabel.setText("Extracted " + entry.getName());
+                    openFile(extracted);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    statusLabel.setText(" ");
+                    JOptionPane.showMessageDialog(FileExplorer.this, "Failed to extract file: " + ex.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    // Archives are browsed read-only
+    private boolean refuseArchiveChange(File dir) {
+        if (dir == null || !Archives.isArchiveFolder(dir)) return false;
+        JOptionPane.showMessageDialog(this, "Archives are opened read-only.", "Info", JOptionPane.INFORMATION_MESSAGE);
+        return true;
+    }
+
     private void doSearch() {
         String q = searchField.getText();
         if (q == null || q.trim().isEmpty()) {
             refreshCurrentDirectory();
             return;
         }
-        String ql = q.trim().toLowerCase();
         if (currentDirectory == null) return;
-        File[] files = currentDirectory.listFiles();
-        if (files == null) return;
-        List<File> matches = Arrays.stream(files)
-                .filter(f -> f.getName().toLowerCase().contains(ql))
-                .sorted(Comparator.comparing(File::getName, String.CASE_INSENSITIVE_ORDER))
-                .collect(Collectors.toList());
-        fileTableModel.setFiles(matches);
-        statusLabel.setText("Search: " + matches.size() + " matches for \"" + q + "\" in " + currentDirectory.getName());
+        if (Archives.isArchiveFolder(currentDirectory)) {
+            statusLabel.setText("Search does not look inside archives");
+            return;
+        }
+        if (directoryLoader != null) directoryLoader.cancel(true);
+        if (searchWorker != null) searchWorker.cancel(true);
+        if (viewWorker != null) viewWorker.cancel(true);
+        viewWorker = null;
+        showingSearchResults = true;
+        duplicateGroups = null;
+        if ("Contents".equals(searchMode.getSelectedItem())) {
+            fileTableModel.setEntries(Collections.<FileEntry>emptyList());
+            fileTableModel.showDetails("Match");
+            updateSortHeaders();
+            searchWorker = new ContentSearchWorker(currentDirectory, q.trim());
+            searchWorker.execute();
+            return;
+        }
+        NameQuery query = NameQuery.parse(q.trim());
+        FileIndex index = findIndexFor(currentDirectory);
+        if (index == null) {
+            // matches stream in while the index is being built
+            fileTableModel.setEntries(Collections.<FileEntry>emptyList());
+        }
+        searchWorker = new SearchWorker(currentDirectory, query, index);
+        searchWorker.execute();
+    }
+
+    private FileIndex findIndexFor(File dir) {
+        for (FileIndex index : searchIndexes.values()) {
+            if (index.covers(dir)) return index;
+        }
+        return null;
+    }
+
+    private void addSearchIndex(FileIndex index) {
+        // a wider index makes any index below it redundant
+        for (Iterator<FileIndex> it = searchIndexes.values().iterator(); it.hasNext(); ) {
+            FileIndex existing = it.next();
+            if (!index.covers(existing.getRoot())) continue;
+            existing.stopWatching();
+            if (!existing.getRoot().equals(index.getRoot())) FileIndexStore.delete(existing.getRoot());
+            it.remove();
+        }
+        searchIndexes.put(index.getRoot(), index);
+        index.startWatching(root -> SwingUtilities.invokeLater(() -> rebuildIndex(root)));
+        if (index.isDirty()) indexMaintenance.execute(() -> saveIndex(index));
+    }
+
+    // Full rescan, used when a watcher lost events or a stored snapshot is unusable
+    private void rebuildIndex(File root) {
+        statusLabel.setText("Re-indexing " + root.getAbsolutePath() + " ...");
+        indexMaintenance.execute(() -> {
+            FileIndexBuilder builder = new FileIndexBuilder(root, null);
+            INDEX_POOL.invoke(builder.crawler());
+            FileIndex index = builder.build();
+            SwingUtilities.invokeLater(() -> {
+                addSearchIndex(index);
+                statusLabel.setText("Indexed " + index.size() + " files under " + root.getAbsolutePath());
+            });
+        });
+    }
+
+    private void loadSavedIndexes() {
+        indexMaintenance.execute(() -> {
+            for (File snapshot : FileIndexStore.snapshots()) {
+                File root = FileIndexStore.readRoot(snapshot);
+                if (root == null || !root.isDirectory()) {
+                    snapshot.delete();
+                    continue;
+                }
+                if (!snapshot.equals(FileIndexStore.snapshotFor(root))) {
+                    // written under an older naming scheme: rebuilt and saved under the current name
+                    snapshot.delete();
+                    SwingUtilities.invokeLater(() -> rebuildIndex(root));
+                    continue;
+                }
+                try {
+                    FileIndex index = FileIndexStore.load(snapshot, root);
+                    SwingUtilities.invokeLater(() -> addSearchIndex(index));
+                } catch (IOException ex) {
+                    SwingUtilities.invokeLater(() -> rebuildIndex(root));
+                }
+            }
+        });
+        indexMaintenance.scheduleWithFixedDelay(this::saveDirtyIndexes, 1, 1, TimeUnit.MINUTES);
+    }
+
+    private void saveDirtyIndexes() {
+        for (FileIndex index : searchIndexes.values()) {
+            if (index.isDirty()) saveIndex(index);
+        }
+    }
+
+    private void saveIndex(FileIndex index) {
+        try {
+            FileIndexStore.save(index);
+        } catch (IOException ex) {
+            index.markDirty(); // keep running from memory; the next periodic save tries again
+        }
     }
 
     private void showTablePopup(MouseEvent e) {
@@ -416,17 +1291,33 @@ public class FileExplorer extends JFrame {
         JMenuItem openItem = new JMenuItem("Open");
         JMenuItem renameItem = new JMenuItem("Rename");
         JMenuItem deleteItem = new JMenuItem("Delete");
+        JMenuItem copyItem = new JMenuItem("Copy");
+        JMenuItem cutItem = new JMenuItem("Cut");
+        JMenuItem pasteItem = new JMenuItem("Paste");
         JMenuItem propertiesItem = new JMenuItem("Properties");
 
         openItem.addActionListener(a -> openSelected());
         renameItem.addActionListener(a -> renameSelected());
         deleteItem.addActionListener(a -> deleteSelected());
+        copyItem.addActionListener(a -> copySelected(false));
+        cutItem.addActionListener(a -> copySelected(true));
+        pasteItem.addActionListener(a -> pasteFromClipboard());
         propertiesItem.addActionListener(a -> showProperties());
 
         popup.add(openItem);
         popup.add(renameItem);
         popup.add(deleteItem);
         popup.addSeparator();
+        popup.add(copyItem);
+        popup.add(cutItem);
+        popup.add(pasteItem);
+        if (duplicateGroups != null) {
+            JMenuItem extraCopiesItem = new JMenuItem("Select Extra Copies");
+            extraCopiesItem.addActionListener(a -> selectExtraCopies());
+            popup.addSeparator();
+            popup.add(extraCopiesItem);
+        }
+        popup.addSeparator();
         popup.add(propertiesItem);
         popup.show(table, e.getX(), e.getY());
     }
@@ -439,79 +1330,1871 @@ public class FileExplorer extends JFrame {
         sb.append("Name: ").append(f.getName()).append("\n");
         sb.append("Path: ").append(f.getAbsolutePath()).append("\n");
         sb.append("Type: ").append(f.isDirectory() ? "Folder" : "File").append("\n");
-        sb.append("Size: ").append(f.isFile() ? readableFileSize(f.length()) : "-").append("\n");
+        String sizeLine = "Size: " + (f.isFile() ? FileEntry.readableFileSize(f.length()) : f.isDirectory() ? "calculating\u2026" : "-");
+        sb.append(sizeLine).append("\n");
         sb.append("Readable: ").append(f.canRead()).append("\n");
         sb.append("Writable: ").append(f.canWrite()).append("\n");
         sb.append("Executable: ").append(f.canExecute()).append("\n");
         sb.append("Last Modified: ").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(f.lastModified()))).append("\n");
-        JOptionPane.showMessageDialog(this, sb.toString(), "Properties", JOptionPane.INFORMATION_MESSAGE);
-    }
+        JTextArea text = new JTextArea(sb.toString());
+        text.setEditable(false);
+        text.setOpaque(false);
+        SwingWorker<Long, Void> sizer = null;
+        if (f.isDirectory()) {
+            // the dialog is modal, so fill the folder size in while it is showing
+            sizer = new SwingWorker<Long, Void>() {
+                @Override
+                protected Long doInBackground() {
+                    return folderSizes.compute(f.toPath(), this::isCancelled);
+                }
 
-    private String readableFileSize(long size) {
-        if (size <= 0) return "0";
-        final String[] units = new String[] {"B", "KB", "MB", "GB", "TB"};
-        int digitGroups = (int) (Math.log10(size) / Math.log10(1024));
-        return String.format("%.1f %s", size / Math.pow(1024, digitGroups), units[digitGroups]);
+                @Override
+                protected void done() {
+                    if (isCancelled()) return;
+                    try {
+                        text.setText(text.getText().replace(sizeLine, "Size: " + FileEntry.readableFileSize(get())));
+                    } catch (InterruptedException | ExecutionException ex) {
+                        text.setText(text.getText().replace(sizeLine, "Size: unknown"));
+                    }
+                }
+            };
+            sizer.execute();
+        }
+        JOptionPane.showMessageDialog(this, text, "Properties", JOptionPane.INFORMATION_MESSAGE);
+        if (sizer != null) sizer.cancel(true);
     }
 
-    // FileNode used for tree user object
-    private static class FileNode {
-        private final File file;
-        public FileNode(File file) { this.file = file; }
-        public File getFile() { return file; }
-        public String toString() {
-            String name = file.getName();
-            if (name.isEmpty()) return file.getAbsolutePath();
-            return name;
+    // Lists the subfolders of an expanding tree node off the EDT
+    private class TreeLoader extends SwingWorker<List<TreeChild>, Void> {
+        private final DefaultMutableTreeNode node;
+        private final File dir;
+
+        TreeLoader(DefaultMutableTreeNode node, File dir) {
+            this.node = node;
+            this.dir = dir;
+        }
+
+        @Override
+        protected List<TreeChild> doInBackground() {
+            long start = System.nanoTime();
+            List<TreeChild> children = new ArrayList<>();
+            DIRECTORY_OPENS.increment();
+            try (Archives.Handle folder = Archives.folder(dir);
+                 DirectoryStream<Path> stream = Files.newDirectoryStream(folder.path())) {
+                boolean unix = folder.path().getFileSystem().supportedFileAttributeViews().contains("unix");
+                for (Path p : stream) {
+                    ATTRIBUTE_READS.increment();
+                    TreeChild child = TreeChild.read(dir, p, unix);
+                    if (child != null) children.add(child);
+                }
+            } catch (IOException | DirectoryIteratorException ex) {
+                // unreadable folder: show it empty
+            }
+            children.sort(TreeChild.ORDER);
+            METRICS.time("tree.load", start);
+            return children;
+        }
+
+        @Override
+        protected void done() {
+            treeLoaders.remove(node);
+            try {
+                applyTreeChildren(node, get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                applyTreeChildren(node, Collections.<TreeChild>emptyList());
+            }
+            // the table may be waiting for this folder to show up in the tree
+            if (pendingTreeSelection != null) selectTreeNodeForFile(pendingTreeSelection.toFile());
+        }
+    }
+
+    // A subfolder or archive as listed for the tree; hasSubdirectories is null when it still needs probing
+    private static final class TreeChild {
+        static final Comparator<File> FILE_ORDER =
+                Comparator.comparing(File::getName, String.CASE_INSENSITIVE_ORDER).thenComparing(File::getName);
+        static final Comparator<TreeChild> ORDER = (a, b) -> FILE_ORDER.compare(a.file, b.file);
+        private static final int PROBE_LIMIT = 1000;
+
+        final File file;
+        final Boolean hasSubdirectories;
+
+        TreeChild(File file, Boolean hasSubdirectories) {
+            this.file = file;
+            this.hasSubdirectories = hasSubdirectories;
+        }
+
+        // One stat per entry: on unix the same call returns the link count, which is 2 plus the
+        // number of subfolders on filesystems that keep it (1 means the filesystem does not).
+        // Archives are kept expandable without opening them.
+        static TreeChild read(File dir, Path p, boolean unix) {
+            String name = p.getFileName().toString();
+            File file = new File(dir, name);
+            boolean archiveName = Archives.isArchiveName(name) && p.getFileSystem() == FileSystems.getDefault();
+            try {
+                if (unix) {
+                    Map<String, Object> attrs = Files.readAttributes(p, "unix:isDirectory,isRegularFile,nlink");
+                    if (!Boolean.TRUE.equals(attrs.get("isDirectory"))) {
+                        return archiveName && Boolean.TRUE.equals(attrs.get("isRegularFile")) ? new TreeChild(file, Boolean.TRUE) : null;
+                    }
+                    int links = ((Number) attrs.get("nlink")).intValue();
+                    return new TreeChild(file, links == 2 ? Boolean.FALSE : links > 2 ? Boolean.TRUE : null);
+                }
+                // elsewhere (Windows) the directory stream already carries the attributes
+                BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                if (!attrs.isDirectory()) return archiveName && attrs.isRegularFile() ? new TreeChild(file, Boolean.TRUE) : null;
+                return new TreeChild(file, null);
+            } catch (IOException | UnsupportedOperationException | IllegalArgumentException ex) {
+                return null;
+            }
+        }
+
+        // Stops at the first subfolder; very large flat folders keep their handle rather than being scanned
+        static boolean hasSubdirectory(File dir) {
+            int seen = 0;
+            DIRECTORY_OPENS.increment();
+            try (Archives.Handle folder = Archives.folder(dir);
+                 DirectoryStream<Path> stream = Files.newDirectoryStream(folder.path())) {
+                for (Path p : stream) {
+                    if (Files.isDirectory(p) || ++seen >= PROBE_LIMIT) return true;
+                }
+            } catch (IOException | DirectoryIteratorException ex) {
+                return false;
+            }
+            return false;
+        }
+    }
+
+    // Lists a directory off the EDT, streaming entries into the table as they are read
+    // With a cached snapshot on screen, only lists again if the folder changed since, and then
+    // swaps the fresh listing in once it is complete rather than streaming it
+    private class DirectoryLoader extends SwingWorker<int[], Integer> {
+        private final File dir;
+        private final ListingCache.Snapshot cached;
+        // filled here, read by the table up to the last published row count
+        final EntryColumns columns;
+        final long startNanos = System.nanoTime();
+
+        DirectoryLoader(File dir, ListingCache.Snapshot cached) {
+            this.dir = dir;
+            this.cached = cached;
+            this.columns = new EntryColumns(dir);
+        }
+
+        @Override
+        protected int[] doInBackground() throws Exception {
+            long modified = ListingCache.modifiedOf(dir);
+            if (cached != null && ListingCache.isCurrent(cached, modified)) return cached.order;
+            long listedAt = System.currentTimeMillis();
+            IntConsumer onRows = cached == null ? this::publish : rows -> {};
+            if (!DirectoryListing.read(dir, columns, fileSystemView, this::isCancelled, onRows)) return null;
+            METRICS.time("listing.read", startNanos);
+            METRICS.distribution("listing.entries").record(columns.size());
+            long sortStart = System.nanoTime();
+            int[] order = columns.sortedByName();
+            METRICS.time("listing.sort", sortStart);
+            listingCache.put(dir, columns, order, modified, listedAt);
+            return order;
+        }
+
+        @Override
+        protected void process(List<Integer> counts) {
+            if (isStale()) return;
+            fileTableModel.rowsAvailable(columns, counts.get(counts.size() - 1));
+            statusLabel.setText("Loading " + dir.getAbsolutePath() + " ... " + fileTableModel.getRowCount() + " items");
+        }
+
+        @Override
+        protected void done() {
+            if (isStale()) return;
+            directoryLoader = null;
+            try {
+                int[] order = get();
+                if (cached == null || order != cached.order) {
+                    swapColumns(columns, order);
+                    // from the click to a complete, sorted table; a cache hit was timed when shown
+                    if (cached == null) METRICS.time("navigate", startNanos);
+                    statusLabel.setText("Showing " + order.length + " items in " + dir.getAbsolutePath());
+                }
+                for (DirectoryChanges changes : changesDuringLoad) applyToTable(changes);
+                changesDuringLoad.clear();
+                refreshTableView();
+                startFolderSizes();
+                prefetchNeighbours();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                if (cached != null) {
+                    // the snapshot on screen is of a folder that can no longer be read
+                    listingCache.forget(dir);
+                    fileTableModel.setColumns(new EntryColumns(dir), null, 0);
+                }
+                statusLabel.setText("Cannot read " + dir.getAbsolutePath() + " (" + ex.getCause().getMessage() + ")");
+            }
+        }
+
+        private boolean isStale() {
+            return isCancelled() || directoryLoader != this;
+        }
+    }
+
+    // Streams the files under scope whose contents contain the text into the table
+    private class ContentSearchWorker extends SwingWorker<Void, List<ContentMatch>> {
+        private final File scope;
+        private final String text;
+        private final ContentSearch search;
+        private final long startNanos = System.nanoTime();
+        private int shown;
+
+        ContentSearchWorker(File scope, String text) {
+            this.scope = scope;
+            this.text = text;
+            this.search = new ContentSearch(scope, text, MAX_SEARCH_RESULTS);
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            ForkJoinTask<?> crawl = INDEX_POOL.submit(search.crawler());
+            try {
+                while (true) {
+                    try {
+                        crawl.get(100, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException ex) {
+                        publish(search.drainMatches());
+                    }
+                }
+            } catch (InterruptedException ex) {
+                search.cancel();
+                throw ex;
+            }
+            publish(search.drainMatches());
+            return null;
+        }
+
+        @Override
+        protected void process(List<List<ContentMatch>> chunks) {
+            if (isStale()) return;
+            for (List<ContentMatch> chunk : chunks) {
+                List<FileEntry> entries = new ArrayList<>(chunk.size());
+                for (ContentMatch m : chunk) {
+                    fileTableModel.putDetail(m.file, m.line + ": " + m.preview);
+                    entries.add(FileEntry.read(m.file, fileSystemView));
+                }
+                fileTableModel.addEntries(entries);
+                shown += entries.size();
+            }
+            statusLabel.setText("Searching contents of " + scope.getAbsolutePath() + " ... " + search.scanned()
+                    + " files read, " + shown + " matches so far");
+        }
+
+        @Override
+        protected void done() {
+            if (isStale()) return;
+            searchWorker = null;
+            try {
+                get();
+                METRICS.time("search.contents", startNanos);
+                METRICS.counter("search.contents.filesRead").add(search.scanned());
+                refreshTableView();
+                String capped = search.isCapped() ? " (stopped at " + MAX_SEARCH_RESULTS + ")" : "";
+                statusLabel.setText("Search: " + shown + " files containing \"" + text + "\" under " + scope.getName()
+                        + capped + " - " + search.scanned() + " files read");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                statusLabel.setText("Search failed: " + ex.getCause().getMessage());
+            }
+        }
+
+        private boolean isStale() {
+            return isCancelled() || searchWorker != this;
+        }
+    }
+
+    // Answers a search from the index covering the scope, building that index first if needed
+    private class SearchWorker extends SwingWorker<List<FileEntry>, List<FileEntry>> {
+        private final File scope;
+        private final NameQuery query;
+        private volatile FileIndex index;
+        private volatile FileIndexBuilder builder;
+        private final long startNanos = System.nanoTime();
+
+        SearchWorker(File scope, NameQuery query, FileIndex index) {
+            this.scope = scope;
+            this.query = query;
+            this.index = index;
+        }
+
+        @Override
+        protected List<FileEntry> doInBackground() throws Exception {
+            if (index == null) {
+                builder = new FileIndexBuilder(scope, query);
+                ForkJoinTask<?> crawl = INDEX_POOL.submit(builder.crawler());
+                try {
+                    while (true) {
+                        try {
+                            crawl.get(100, TimeUnit.MILLISECONDS);
+                            break;
+                        } catch (TimeoutException ex) {
+                            publish(readEntries(builder.drainMatches()));
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    builder.cancel();
+                    throw ex;
+                }
+                publish(readEntries(builder.drainMatches()));
+                index = builder.build();
+            }
+            return readEntries(index.query(query, scope, MAX_SEARCH_RESULTS));
+        }
+
+        private List<FileEntry> readEntries(List<File> files) {
+            List<FileEntry> entries = new ArrayList<>(files.size());
+            for (File f : files) {
+                if (isCancelled()) break;
+                entries.add(FileEntry.read(f, fileSystemView));
+            }
+            return entries;
+        }
+
+        @Override
+        protected void process(List<List<FileEntry>> chunks) {
+            if (isStale()) return;
+            for (List<FileEntry> chunk : chunks) fileTableModel.addEntries(chunk);
+            statusLabel.setText("Indexing " + scope.getAbsolutePath() + " ... " + builder.size()
+                    + " files scanned, " + fileTableModel.getRowCount() + " matches so far");
+        }
+
+        @Override
+        protected void done() {
+            if (isStale()) return;
+            searchWorker = null;
+            try {
+                List<FileEntry> entries = get();
+                if (builder != null) addSearchIndex(index);
+                METRICS.time(builder != null ? "search.names.withIndexing" : "search.names", startNanos);
+                fileTableModel.setEntries(entries);
+                updateSortHeaders();
+                refreshTableView();
+                String capped = entries.size() >= MAX_SEARCH_RESULTS ? " (showing best " + MAX_SEARCH_RESULTS + ")" : "";
+                statusLabel.setText("Search: " + entries.size() + " matches for \"" + query + "\" under "
+                        + scope.getName() + capped + " - " + index.size() + " files indexed");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                statusLabel.setText("Search failed: " + ex.getCause().getMessage());
+            }
+        }
+
+        private boolean isStale() {
+            return isCancelled() || searchWorker != this;
+        }
+    }
+
+    // One content search: a parallel crawl that scans every regular file under root for the
+    // pattern and queues the files that contain it, with their first matching line
+    private static final class ContentSearch {
+        // larger files are skipped
+        static final long MAX_FILE_SIZE = 256L << 20;
+        // files are read through one direct buffer per thread, never mapped: a mapping would
+        // keep the file locked on Windows until it is garbage collected
+        private static final int CHUNK_BYTES = 1 << 20;
+        private static final ThreadLocal<ByteBuffer> CHUNKS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_BYTES));
+        // a NUL byte in the first block marks a file as binary, as grep does
+        private static final int SNIFF_BYTES = 8192;
+        private static final int PREVIEW_CHARS = 160;
+
+        private final File root;
+        private final BytePattern pattern;
+        private final int maxResults;
+        private final ConcurrentLinkedQueue<ContentMatch> matches = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger found = new AtomicInteger();
+        private final AtomicLong scanned = new AtomicLong();
+        private volatile boolean cancelled;
+
+        ContentSearch(File root, String text, int maxResults) {
+            this.root = root;
+            this.pattern = new BytePattern(text.getBytes(StandardCharsets.UTF_8), true);
+            this.maxResults = maxResults;
+        }
+
+        ForkJoinTask<?> crawler() {
+            return new ContentCrawler(this, root.toPath());
+        }
+
+        void cancel() { cancelled = true; }
+        // cancelled, or the result cap has been reached
+        boolean isStopped() { return cancelled || found.get() >= maxResults; }
+        boolean isCapped() { return found.get() >= maxResults; }
+        long scanned() { return scanned.get(); }
+
+        List<ContentMatch> drainMatches() {
+            List<ContentMatch> drained = new ArrayList<>();
+            ContentMatch m;
+            while ((m = matches.poll()) != null) drained.add(m);
+            return drained;
+        }
+
+        void scan(Path file, long size) {
+            if (size < pattern.length() || size > MAX_FILE_SIZE) return;
+            scanned.incrementAndGet();
+            ByteBuffer buf = chunk();
+            // a match may straddle two chunks, so each keeps the last length - 1 bytes of the one before
+            int overlap = Math.max(0, pattern.length() - 1);
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long base = 0; // file offset of buf[0]
+                buf.clear();
+                while (true) {
+                    while (buf.hasRemaining() && ch.read(buf) >= 0) {}
+                    boolean end = buf.hasRemaining();
+                    int limit = buf.position();
+                    if (base == 0) {
+                        for (int i = 0, n = Math.min(limit, SNIFF_BYTES); i < n; i++) {
+                            if (buf.get(i) == 0) return;
+                        }
+                    }
+                    int at = pattern.indexIn(buf, 0, limit);
+                    if (at >= 0) {
+                        if (isStopped() || found.incrementAndGet() > maxResults) return;
+                        long offset = base + at;
+                        matches.add(new ContentMatch(file.toFile(), lineNumber(ch, buf, offset), previewOf(ch, offset)));
+                        return;
+                    }
+                    if (end || isStopped()) return;
+                    int keep = Math.min(overlap, limit);
+                    base += limit - keep;
+                    buf.position(limit - keep);
+                    buf.limit(limit);
+                    buf.compact();
+                }
+            } catch (IOException | UnsupportedOperationException ex) {
+                // unreadable or special file: nothing to report
+            }
+        }
+
+        private ByteBuffer chunk() {
+            ByteBuffer buf = CHUNKS.get();
+            if (buf.capacity() < 2 * pattern.length()) {
+                buf = ByteBuffer.allocateDirect(2 * pattern.length());
+                CHUNKS.set(buf);
+            }
+            return buf;
+        }
+
+        // Counts the newlines before offset, reading the file again from the start
+        private static int lineNumber(FileChannel ch, ByteBuffer buf, long offset) throws IOException {
+            int line = 1;
+            for (long at = 0; at < offset; ) {
+                buf.clear();
+                if (offset - at < buf.capacity()) buf.limit((int) (offset - at));
+                int read = ch.read(buf, at);
+                if (read < 0) break;
+                for (int i = 0; i < read; i++) {
+                    if (buf.get(i) == '\n') line++;
+                }
+                at += read;
+            }
+            return line;
+        }
+
+        // The matching line, clipped to a window around the match
+        private static String previewOf(FileChannel ch, long offset) throws IOException {
+            long from = Math.max(0, offset - PREVIEW_CHARS / 2);
+            ByteBuffer window = ByteBuffer.allocate(PREVIEW_CHARS / 2 + PREVIEW_CHARS);
+            while (window.hasRemaining() && ch.read(window, from + window.position()) >= 0) {}
+            window.flip();
+            return previewOf(window, (int) (offset - from));
+        }
+
+        private static String previewOf(ByteBuffer buf, int at) {
+            int start = at;
+            while (start > 0 && at - start < PREVIEW_CHARS / 2 && buf.get(start - 1) != '\n') start--;
+            int end = at;
+            while (end < buf.limit() && end - start < PREVIEW_CHARS && buf.get(end) != '\n' && buf.get(end) != '\r') end++;
+            byte[] line = new byte[end - start];
+            for (int i = 0; i < line.length; i++) line[i] = buf.get(start + i);
+            return new String(line, StandardCharsets.UTF_8).replace('\t', ' ').trim();
+        }
+    }
+
+    private static final class ContentMatch {
+        final File file;
+        final int line;
+        final String preview;
+
+        ContentMatch(File file, int line, String preview) {
+            this.file = file;
+            this.line = line;
+            this.preview = preview;
+        }
+    }
+
+    // Lists one directory, scans its files and forks a task per subdirectory; symlinks are not followed
+    private static final class ContentCrawler extends RecursiveAction {
+        private final ContentSearch search;
+        private final Path dir;
+
+        ContentCrawler(ContentSearch search, Path dir) {
+            this.search = search;
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            if (search.isStopped()) return;
+            List<ContentCrawler> subtasks = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            List<Long> sizes = new ArrayList<>();
+            DIRECTORY_OPENS.increment();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path p : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        ATTRIBUTE_READS.increment();
+                        attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException ex) {
+                        continue; // vanished between listing and stat
+                    }
+                    if (attrs.isDirectory()) {
+                        subtasks.add(new ContentCrawler(search, p));
+                    } else if (attrs.isRegularFile()) {
+                        files.add(p);
+                        sizes.add(attrs.size());
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException ex) {
+                return; // unreadable directory: search what we can elsewhere
+            }
+            // subdirectories proceed on other workers while this one reads the files
+            for (ContentCrawler task : subtasks) task.fork();
+            for (int i = 0; i < files.size() && !search.isStopped(); i++) search.scan(files.get(i), sizes.get(i));
+            for (ContentCrawler task : subtasks) task.join();
+        }
+    }
+
+    // Boyer-Moore-Horspool over raw bytes; with ignoreCase, ASCII letters match either case
+    private static final class BytePattern {
+        private final byte[] needle;
+        private final int[] shift = new int[256];
+        private final byte[] fold = new byte[256];
+
+        BytePattern(byte[] pattern, boolean ignoreCase) {
+            for (int b = 0; b < 256; b++) {
+                fold[b] = (byte) (ignoreCase && b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b);
+            }
+            needle = new byte[pattern.length];
+            for (int i = 0; i < pattern.length; i++) needle[i] = fold[pattern[i] & 0xff];
+            Arrays.fill(shift, needle.length);
+            for (int i = 0; i < needle.length - 1; i++) shift[needle[i] & 0xff] = needle.length - 1 - i;
+        }
+
+        int length() { return needle.length; }
+
+        // First index of the pattern in buf[from, to), or -1; absolute reads, so position is untouched
+        int indexIn(ByteBuffer buf, int from, int to) {
+            int last = needle.length - 1;
+            if (last < 0) return from;
+            for (int i = from; i + last < to; ) {
+                byte tail = fold[buf.get(i + last) & 0xff];
+                if (tail == needle[last]) {
+                    int k = last - 1;
+                    while (k >= 0 && fold[buf.get(i + k) & 0xff] == needle[k]) k--;
+                    if (k < 0) return i;
+                }
+                i += shift[tail & 0xff];
+            }
+            return -1;
+        }
+    }
+
+    // Finds groups of identical files under a root in stages, each one narrowing what the next,
+    // dearer stage has to read: equal size, then a hash of the first and last 64 KB, then a
+    // hash of the whole file. Listing and both hashing stages run in parallel.
+    private static final class DuplicateFinder {
+        private static final int EDGE = 64 * 1024;
+        private static final int HASH_BATCH = 16;
+        private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1 << 20));
+
+        private final File root;
+        private volatile boolean cancelled;
+        private volatile String stage = "Listing files";
+        private final AtomicLong done = new AtomicLong();
+        private volatile long total;
+        // every regular, non-empty file found by the crawl
+        private Path[] files = new Path[1024];
+        private long[] sizes = new long[1024];
+        private int count;
+
+        DuplicateFinder(File root) { this.root = root; }
+
+        void cancel() { cancelled = true; }
+        boolean isCancelled() { return cancelled; }
+
+        String progress() {
+            long t = total;
+            return t > 0 ? String.format("%s: %,d of %,d", stage, done.get(), t) : String.format("%s: %,d", stage, done.get());
+        }
+
+        // Groups of two or more identical files, the ones wasting most space first
+        List<List<File>> run() {
+            INDEX_POOL.invoke(new Lister(this, root.toPath()));
+            if (cancelled) return Collections.emptyList();
+
+            LongCounter perSize = new LongCounter();
+            for (int i = 0; i < count; i++) perSize.increment(sizes[i]);
+            IntList sameSize = new IntList();
+            for (int i = 0; i < count; i++) {
+                if (perSize.get(sizes[i]) > 1) sameSize.add(i);
+            }
+
+            byte[][] edges = new byte[count][];
+            hashAll("Comparing file ends", sameSize, i -> edges[i] = hash(i, true));
+            if (cancelled) return Collections.emptyList();
+            List<int[]> candidates = groupBy(sameSize, edges);
+
+            // the edge hash already covers files no longer than both edges
+            byte[][] contents = new byte[count][];
+            IntList whole = new IntList();
+            for (int[] group : candidates) {
+                for (int i : group) {
+                    if (sizes[i] <= 2L * EDGE) contents[i] = edges[i];
+                    else whole.add(i);
+                }
+            }
+            hashAll("Comparing whole files", whole, i -> contents[i] = hash(i, false));
+            if (cancelled) return Collections.emptyList();
+            IntList remaining = new IntList();
+            for (int[] group : candidates) {
+                for (int i : group) remaining.add(i);
+            }
+            List<int[]> groups = groupBy(remaining, contents);
+            groups.sort((a, b) -> Long.compare(sizes[b[0]] * (b.length - 1), sizes[a[0]] * (a.length - 1)));
+
+            List<List<File>> result = new ArrayList<>(groups.size());
+            for (int[] group : groups) {
+                List<File> same = new ArrayList<>(group.length);
+                for (int i : group) same.add(files[i].toFile());
+                result.add(same);
+            }
+            return result;
+        }
+
+        synchronized void addAll(List<Path> paths, List<Long> lengths) {
+            int needed = count + paths.size();
+            if (needed > files.length) {
+                int capacity = Math.max(needed, files.length * 2);
+                files = Arrays.copyOf(files, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                files[count] = paths.get(i);
+                sizes[count++] = lengths.get(i);
+            }
+            done.addAndGet(paths.size());
+        }
+
+        private void hashAll(String name, IntList ids, IntConsumer hashOne) {
+            stage = name;
+            done.set(0);
+            total = ids.size();
+            int[] items = new int[ids.size()];
+            for (int i = 0; i < items.length; i++) items[i] = ids.get(i);
+            INDEX_POOL.invoke(new HashTask(this, items, 0, items.length, hashOne));
+        }
+
+        // Runs of two or more files with the same size and digest; files that could not be read
+        // (null digest) are left out
+        private List<int[]> groupBy(IntList ids, byte[][] digests) {
+            int[] order = new int[ids.size()];
+            int n = 0;
+            for (int k = 0; k < ids.size(); k++) {
+                if (digests[ids.get(k)] != null) order[n++] = ids.get(k);
+            }
+            order = Arrays.copyOf(order, n);
+            IntSort.sort(order, (a, b) -> {
+                int c = Long.compare(sizes[a], sizes[b]);
+                return c != 0 ? c : compareBytes(digests[a], digests[b]);
+            });
+            List<int[]> groups = new ArrayList<>();
+            for (int start = 0, end; start < n; start = end) {
+                end = start + 1;
+                while (end < n && sizes[order[end]] == sizes[order[start]] && Arrays.equals(digests[order[end]], digests[order[start]])) end++;
+                if (end - start > 1) groups.add(Arrays.copyOfRange(order, start, end));
+            }
+            return groups;
+        }
+
+        private byte[] hash(int i, boolean edgesOnly) {
+            try (FileChannel ch = FileChannel.open(files[i], StandardOpenOption.READ)) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                long size = sizes[i];
+                if (edgesOnly && size > 2L * EDGE) {
+                    update(digest, ch, 0, EDGE);
+                    update(digest, ch, size - EDGE, EDGE);
+                } else {
+                    update(digest, ch, 0, size);
+                }
+                return digest.digest();
+            } catch (IOException | NoSuchAlgorithmException ex) {
+                return null; // unreadable now: cannot be shown to be a duplicate
+            } finally {
+                done.incrementAndGet();
+            }
+        }
+
+        private void update(MessageDigest digest, FileChannel ch, long from, long length) throws IOException {
+            ByteBuffer buf = BUFFERS.get();
+            long pos = from, end = from + length;
+            while (pos < end && !cancelled) {
+                buf.clear();
+                if (end - pos < buf.capacity()) buf.limit((int) (end - pos));
+                int n = ch.read(buf, pos);
+                if (n < 0) break; // shrank while reading
+                pos += n;
+                buf.flip();
+                digest.update(buf);
+            }
+        }
+
+        private static int compareBytes(byte[] a, byte[] b) {
+            for (int i = 0; i < Math.min(a.length, b.length); i++) {
+                if (a[i] != b[i]) return (a[i] & 0xff) - (b[i] & 0xff);
+            }
+            return a.length - b.length;
+        }
+
+        // Lists one directory and forks a task per subdirectory; symlinks are not followed
+        private static final class Lister extends RecursiveAction {
+            private final DuplicateFinder finder;
+            private final Path dir;
+
+            Lister(DuplicateFinder finder, Path dir) {
+                this.finder = finder;
+                this.dir = dir;
+            }
+
+            @Override
+            protected void compute() {
+                if (finder.isCancelled()) return;
+                List<Lister> subtasks = new ArrayList<>();
+                List<Path> paths = new ArrayList<>();
+                List<Long> lengths = new ArrayList<>();
+                DIRECTORY_OPENS.increment();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                    for (Path p : stream) {
+                        BasicFileAttributes attrs;
+                        try {
+                            ATTRIBUTE_READS.increment();
+                            attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        } catch (IOException ex) {
+                            continue; // vanished between listing and stat
+                        }
+                        if (attrs.isDirectory()) {
+                            subtasks.add(new Lister(finder, p));
+                        } else if (attrs.isRegularFile() && attrs.size() > 0) {
+                            paths.add(p);
+                            lengths.add(attrs.size());
+                        }
+                    }
+                } catch (IOException | DirectoryIteratorException ex) {
+                    return; // unreadable directory: compare what we can elsewhere
+                }
+                finder.addAll(paths, lengths);
+                invokeAll(subtasks);
+            }
+        }
+
+        // Hashes a range of files, splitting until a batch is small enough to do in place
+        private static final class HashTask extends RecursiveAction {
+            private final DuplicateFinder finder;
+            private final int[] items;
+            private final int from;
+            private final int to;
+            private final IntConsumer hashOne;
+
+            HashTask(DuplicateFinder finder, int[] items, int from, int to, IntConsumer hashOne) {
+                this.finder = finder;
+                this.items = items;
+                this.from = from;
+                this.to = to;
+                this.hashOne = hashOne;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > HASH_BATCH) {
+                    int mid = (from + to) >>> 1;
+                    invokeAll(new HashTask(finder, items, from, mid, hashOne), new HashTask(finder, items, mid, to, hashOne));
+                    return;
+                }
+                for (int k = from; k < to && !finder.isCancelled(); k++) hashOne.accept(items[k]);
+            }
+        }
+    }
+
+    // Open-addressing long -> int counter, so counting millions of file sizes boxes nothing.
+    // Keys must be non-zero; zero marks a free slot.
+    private static final class LongCounter {
+        private long[] keys = new long[1024];
+        private int[] counts = new int[1024];
+        private int size;
+
+        void increment(long key) {
+            if (size * 2 >= keys.length) grow();
+            int slot = slotOf(keys, key);
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot]++;
+        }
+
+        int get(long key) {
+            int slot = slotOf(keys, key);
+            return keys[slot] == key ? counts[slot] : 0;
+        }
+
+        private static int slotOf(long[] keys, long key) {
+            int mask = keys.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int slot = slotOf(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    // Watches the directories on screen and hands coalesced changes to the EDT, so a burst of
+    // events (say a build writing thousands of files) arrives as one batch per directory
+    private static final class DirectoryWatcher implements Runnable {
+        private static final long QUIET_MILLIS = 200;
+        private static final long MAX_DELAY_MILLIS = 1000;
+
+        private final FileSystemView view;
+        private final Consumer<List<DirectoryChanges>> listener;
+        private final WatchService service;
+        private final Map<Path, WatchKey> keys = new HashMap<>();
+        private final Map<Path, Integer> watchCounts = new HashMap<>();
+        private final Map<Path, DirectoryChanges> pending = new LinkedHashMap<>();
+
+        DirectoryWatcher(FileSystemView view, Consumer<List<DirectoryChanges>> listener) {
+            this.view = view;
+            this.listener = listener;
+            WatchService ws;
+            try {
+                ws = FileSystems.getDefault().newWatchService();
+            } catch (IOException ex) {
+                ws = null; // no watch support: the view only changes on refresh
+            }
+            this.service = ws;
+        }
+
+        boolean isActive() { return service != null; }
+
+        void start() {
+            if (service == null) return;
+            Thread t = new Thread(this, "directory-watcher");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        // Watches are counted: the current directory may also be expanded in the tree
+        synchronized void watch(Path dir) {
+            if (service == null) return;
+            Integer n = watchCounts.get(dir);
+            if (n == null) {
+                try {
+                    keys.put(dir, dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY));
+                } catch (IOException ex) {
+                    return;
+                }
+            }
+            watchCounts.put(dir, n == null ? 1 : n + 1);
+        }
+
+        synchronized void unwatch(Path dir) {
+            Integer n = watchCounts.get(dir);
+            if (n == null) return;
+            if (n > 1) {
+                watchCounts.put(dir, n - 1);
+                return;
+            }
+            watchCounts.remove(dir);
+            WatchKey key = keys.remove(dir);
+            if (key != null) key.cancel();
+        }
+
+        @Override
+        public void run() {
+            long firstEvent = 0;
+            long lastEvent = 0;
+            try {
+                while (true) {
+                    WatchKey key = pending.isEmpty() ? service.take() : service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                    long now = System.currentTimeMillis();
+                    if (key != null) {
+                        Path dir = (Path) key.watchable();
+                        for (WatchEvent<?> event : key.pollEvents()) record(dir, event);
+                        key.reset();
+                        if (firstEvent == 0) firstEvent = now;
+                        lastEvent = now;
+                    }
+                    if (!pending.isEmpty() && (now - lastEvent >= QUIET_MILLIS || now - firstEvent >= MAX_DELAY_MILLIS)) {
+                        flush();
+                        firstEvent = 0;
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                // shutting down
+            }
+        }
+
+        private void record(Path dir, WatchEvent<?> event) {
+            DirectoryChanges changes = pending.computeIfAbsent(dir, DirectoryChanges::new);
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changes.overflow = true;
+                return;
+            }
+            String name = event.context().toString();
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                changes.createdNames.add(name);
+                changes.modifiedNames.remove(name);
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                changes.createdNames.remove(name);
+                changes.modifiedNames.remove(name);
+                changes.deleted.add(name);
+            } else if (!changes.createdNames.contains(name)) {
+                changes.modifiedNames.add(name);
+            }
+        }
+
+        // Reads the attributes of new and changed entries here rather than on the EDT
+        private void flush() {
+            List<DirectoryChanges> batch = new ArrayList<>(pending.values());
+            pending.clear();
+            for (DirectoryChanges changes : batch) {
+                if (changes.overflow) continue;
+                for (String name : changes.createdNames) readInto(changes, name, changes.created);
+                for (String name : changes.modifiedNames) readInto(changes, name, changes.modified);
+            }
+            SwingUtilities.invokeLater(() -> listener.accept(batch));
+        }
+
+        private void readInto(DirectoryChanges changes, String name, List<FileEntry> target) {
+            File f = changes.dir.resolve(name).toFile();
+            if (f.exists()) target.add(FileEntry.read(f, view));
+            else changes.deleted.add(name); // came and went within the batch
         }
     }
 
-    // Table model to show files
-    private static class FileTableModel extends AbstractTableModel {
-        private final String[] columns = {"Name", "Size", "Type", "Last Modified"};
-        private List<File> files = new ArrayList<>();
-        private final FileSystemView view = FileSystemView.getFileSystemView();
-        private final SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    // Net effect of the events seen for one directory since the last flush
+    private static final class DirectoryChanges {
+        final Path dir;
+        final Set<String> deleted = new LinkedHashSet<>();
+        final List<FileEntry> created = new ArrayList<>();
+        final List<FileEntry> modified = new ArrayList<>();
+        // set when the event queue overflowed and the directory has to be listed again
+        boolean overflow;
+        private final Set<String> createdNames = new LinkedHashSet<>();
+        private final Set<String> modifiedNames = new LinkedHashSet<>();
+
+        DirectoryChanges(Path dir) { this.dir = dir; }
+    }
+
+    // Modeless progress window for long file operations
+    private static final class ProgressDialog extends JDialog {
+        private final JLabel note = new JLabel(" ");
+        private final javax.swing.Timer refresh;
+
+        ProgressDialog(Frame owner, String title, Supplier<String> progress, Runnable onCancel) {
+            super(owner, title, false);
+            JProgressBar bar = new JProgressBar();
+            bar.setIndeterminate(true);
+            JButton cancel = new JButton("Cancel");
+            cancel.addActionListener(e -> {
+                cancel.setEnabled(false);
+                onCancel.run();
+            });
+            JPanel panel = new JPanel(new BorderLayout(8, 8));
+            panel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+            panel.add(note, BorderLayout.NORTH);
+            panel.add(bar, BorderLayout.CENTER);
+            panel.add(cancel, BorderLayout.EAST);
+            setContentPane(panel);
+            setSize(480, 120);
+            setLocationRelativeTo(owner);
+            refresh = new javax.swing.Timer(250, e -> note.setText(progress.get()));
+            refresh.start();
+        }
 
-        public void setFiles(List<File> files) {
-            this.files = new ArrayList<>(files);
-            fireTableDataChanged();
+        @Override
+        public void dispose() {
+            refresh.stop();
+            super.dispose();
         }
+    }
+
+    // One queued copy or move. Moves within a filesystem are single atomic renames; everything
+    // else is sized first (for the ETA) and then copied on FILE_OPS_POOL: a task per directory,
+    // small files in forked batches, large files in their own task in transferTo chunks.
+    private static final class TransferJob {
+        enum State { QUEUED, SCANNING, RUNNING, PAUSED, DONE, CANCELLED, FAILED }
+
+        private static final long LARGE_FILE = 8L << 20;
+        private static final long CHUNK = 16L << 20;
+        private static final int BATCH = 64;
+
+        final List<Path> sources;
+        final Path targetDir;
+        final boolean move;
+        private volatile State state = State.QUEUED;
+        private volatile boolean paused;
+        private volatile boolean cancelled;
+        private volatile long totalBytes = -1;
+        private final AtomicLong doneBytes = new AtomicLong();
+        private final AtomicLong doneEntries = new AtomicLong();
+        private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        private volatile long startNanos;
+        private final Object pauseLock = new Object();
+
+        TransferJob(List<Path> sources, Path targetDir, boolean move) {
+            this.sources = sources;
+            this.targetDir = targetDir;
+            this.move = move;
+        }
+
+        OperationReport run() {
+            startNanos = System.nanoTime();
+            List<Path[]> copies = new ArrayList<>();
+            List<Path> movedByCopy = new ArrayList<>();
+            for (Path src : sources) {
+                if (cancelled) break;
+                if (targetDir.startsWith(src)) {
+                    errors.add(src + ": cannot " + (move ? "move" : "copy") + " a folder into itself");
+                    continue;
+                }
+                if (move && targetDir.equals(src.getParent())) continue; // already there
+                Path dst = uniqueTarget(targetDir, src.getFileName().toString());
+                if (move) {
+                    try {
+                        Files.move(src, dst, StandardCopyOption.ATOMIC_MOVE);
+                        doneEntries.incrementAndGet();
+                        continue;
+                    } catch (AtomicMoveNotSupportedException ex) {
+                        movedByCopy.add(src); // another filesystem: copy, then delete the source
+                    } catch (IOException ex) {
+                        fail(src, ex);
+                        continue;
+                    }
+                }
+                copies.add(new Path[] {src, dst});
+            }
+            if (!copies.isEmpty() && !cancelled) {
+                state = State.SCANNING;
+                long total = 0;
+                for (Path[] c : copies) total += sizeOf(c[0]);
+                totalBytes = total;
+                state = paused ? State.PAUSED : State.RUNNING;
+                List<CopyTask> tasks = new ArrayList<>();
+                for (Path[] c : copies) tasks.add(new CopyTask(c[0], c[1]));
+                FILE_OPS_POOL.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(tasks);
+                    }
+                });
+                List<Path> deletable = new ArrayList<>();
+                for (int i = 0; i < tasks.size(); i++) {
+                    // only drop sources whose copy completed without a single failure
+                    if (movedByCopy.contains(copies.get(i)[0]) && tasks.get(i).join()) deletable.add(copies.get(i)[0]);
+                }
+                if (!deletable.isEmpty() && !cancelled) errors.addAll(new DeleteOperation(deletable).run().errors);
+            }
+            state = cancelled ? State.CANCELLED : errors.isEmpty() ? State.DONE : State.FAILED;
+            return new OperationReport(move ? "Moved" : "Copied", doneEntries.get(), doneBytes.get(),
+                    System.nanoTime() - startNanos, new ArrayList<>(errors), cancelled);
+        }
+
+        State getState() { return state; }
 
-        public File getFileAt(int row) {
-            return files.get(row);
+        void pause() {
+            paused = true;
+            if (state == State.RUNNING) state = State.PAUSED;
         }
 
-        public int getRowCount() { return files.size(); }
+        void resume() {
+            synchronized (pauseLock) {
+                paused = false;
+                pauseLock.notifyAll();
+            }
+            if (state == State.PAUSED) state = State.RUNNING;
+        }
+
+        void cancel() {
+            cancelled = true;
+            resume();
+        }
+
+        String describe() {
+            String what = sources.size() == 1 ? sources.get(0).getFileName().toString() : sources.size() + " items";
+            return (move ? "Move " : "Copy ") + what + " to " + targetDir;
+        }
+
+        String progress() {
+            long total = totalBytes;
+            if (total <= 0) return String.format("%,d items", doneEntries.get());
+            return String.format("%d%% (%s of %s)", doneBytes.get() * 100 / total,
+                    FileEntry.readableFileSize(doneBytes.get()), FileEntry.readableFileSize(total));
+        }
+
+        String speed() {
+            if (state != State.RUNNING) return "";
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            return seconds <= 0 ? "" : FileEntry.readableFileSize((long) (doneBytes.get() / seconds)) + "/s";
+        }
+
+        String eta() {
+            long total = totalBytes;
+            long done = doneBytes.get();
+            if (state != State.RUNNING || total <= 0 || done == 0) return "";
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            long remaining = (long) ((total - done) * seconds / done);
+            return String.format("%d:%02d", remaining / 60, remaining % 60);
+        }
+
+        // Parks the calling pool thread while paused, letting the pool compensate for it
+        private void awaitResume() {
+            if (!paused || cancelled) return;
+            try {
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                    public boolean block() throws InterruptedException {
+                        synchronized (pauseLock) {
+                            while (paused && !cancelled) pauseLock.wait();
+                        }
+                        return true;
+                    }
+
+                    public boolean isReleasable() {
+                        return !paused || cancelled;
+                    }
+                });
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void fail(Path p, IOException ex) {
+            errors.add(p + ": " + (ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName()));
+        }
+
+        private long sizeOf(Path src) {
+            long[] total = {0};
+            try {
+                Files.walkFileTree(src, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        total[0] += attrs.size();
+                        return cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                        return FileVisitResult.CONTINUE; // reported when the copy reaches it
+                    }
+                });
+            } catch (IOException ex) {
+                // sized as far as possible
+            }
+            return total[0];
+        }
+
+        // Zero-copy where the platform supports it; large files go in chunks so pause,
+        // cancel and progress stay responsive
+        private boolean copyFile(Path src, Path dst, BasicFileAttributes attrs) {
+            awaitResume();
+            if (cancelled) return false;
+            try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(dst, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long size = in.size();
+                long pos = 0;
+                while (pos < size) {
+                    if (size > LARGE_FILE) awaitResume();
+                    if (cancelled) break;
+                    long n = in.transferTo(pos, Math.min(CHUNK, size - pos), out);
+                    if (n <= 0) break;
+                    pos += n;
+                    doneBytes.addAndGet(n);
+                }
+                if (pos < size && !cancelled) throw new IOException("Short copy: " + pos + " of " + size + " bytes");
+            } catch (IOException ex) {
+                fail(src, ex);
+                deletePartial(dst);
+                return false;
+            }
+            if (cancelled) {
+                deletePartial(dst);
+                return false;
+            }
+            copyModifiedTime(dst, attrs);
+            doneEntries.incrementAndGet();
+            return true;
+        }
+
+        private void deletePartial(Path dst) {
+            try {
+                Files.deleteIfExists(dst);
+            } catch (IOException ignored) {}
+        }
+
+        private void copyModifiedTime(Path dst, BasicFileAttributes attrs) {
+            try {
+                Files.setLastModifiedTime(dst, attrs.lastModifiedTime());
+            } catch (IOException ignored) {}
+        }
+
+        static Path uniqueTarget(Path dir, String name) {
+            Path candidate = dir.resolve(name);
+            if (!Files.exists(candidate, LinkOption.NOFOLLOW_LINKS)) return candidate;
+            int dot = name.lastIndexOf('.');
+            String base = dot > 0 ? name.substring(0, dot) : name;
+            String ext = dot > 0 ? name.substring(dot) : "";
+            for (int i = 2; ; i++) {
+                candidate = dir.resolve(base + " (" + i + ")" + ext);
+                if (!Files.exists(candidate, LinkOption.NOFOLLOW_LINKS)) return candidate;
+            }
+        }
+
+        // Returns whether everything at and below the source was copied
+        private final class CopyTask extends RecursiveTask<Boolean> {
+            private final Path src;
+            private final Path dst;
+
+            CopyTask(Path src, Path dst) {
+                this.src = src;
+                this.dst = dst;
+            }
+
+            @Override
+            protected Boolean compute() {
+                if (cancelled) return false;
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(src, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isSymbolicLink()) {
+                        Files.copy(src, dst, LinkOption.NOFOLLOW_LINKS);
+                        doneEntries.incrementAndGet();
+                        return true;
+                    }
+                } catch (IOException ex) {
+                    fail(src, ex);
+                    return false;
+                }
+                if (!attrs.isDirectory()) return copyFile(src, dst, attrs);
+                try {
+                    Files.createDirectory(dst);
+                } catch (IOException ex) {
+                    fail(src, ex);
+                    return false;
+                }
+                List<ForkJoinTask<Boolean>> subtasks = new ArrayList<>();
+                List<Object[]> batch = new ArrayList<>();
+                boolean[] complete = {true};
+                try {
+                    // depth 1: entries (subdirectories included) arrive through visitFile
+                    Files.walkFileTree(src, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes a) {
+                            if (cancelled) return FileVisitResult.TERMINATE;
+                            Path target = dst.resolve(file.getFileName().toString());
+                            if (a.isDirectory() || a.isSymbolicLink() || a.size() > LARGE_FILE) {
+                                subtasks.add(new CopyTask(file, target).fork());
+                            } else {
+                                batch.add(new Object[] {file, target, a});
+                                if (batch.size() == BATCH) {
+                                    subtasks.add(new CopyBatch(new ArrayList<>(batch)).fork());
+                                    batch.clear();
+                                }
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                            fail(file, ex);
+                            complete[0] = false;
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+                } catch (IOException ex) {
+                    fail(src, ex);
+                    complete[0] = false;
+                }
+                if (!new CopyBatch(batch).compute()) complete[0] = false;
+                for (ForkJoinTask<Boolean> sub : subtasks) {
+                    if (!sub.join()) complete[0] = false;
+                }
+                copyModifiedTime(dst, attrs);
+                doneEntries.incrementAndGet();
+                return complete[0] && !cancelled;
+            }
+        }
+
+        private final class CopyBatch extends RecursiveTask<Boolean> {
+            private final List<Object[]> files;
+
+            CopyBatch(List<Object[]> files) { this.files = files; }
+
+            @Override
+            protected Boolean compute() {
+                boolean complete = true;
+                for (Object[] f : files) {
+                    if (!copyFile((Path) f[0], (Path) f[1], (BasicFileAttributes) f[2])) complete = false;
+                }
+                return complete;
+            }
+        }
+    }
+
+    // Rows of the transfers window
+    private static final class TransferJobsModel extends AbstractTableModel {
+        private final String[] columns = {"Job", "Status", "Progress", "Speed", "ETA"};
+        private final List<TransferJob> jobs = new ArrayList<>();
+
+        void add(TransferJob job) {
+            jobs.add(job);
+            fireTableRowsInserted(jobs.size() - 1, jobs.size() - 1);
+        }
+
+        TransferJob getJobAt(int row) { return jobs.get(row); }
+
+        void refresh() {
+            if (!jobs.isEmpty()) fireTableRowsUpdated(0, jobs.size() - 1);
+        }
+
+        public int getRowCount() { return jobs.size(); }
         public int getColumnCount() { return columns.length; }
         public String getColumnName(int col) { return columns[col]; }
 
         public Object getValueAt(int row, int col) {
-            File f = files.get(row);
+            TransferJob job = jobs.get(row);
             switch (col) {
                 case 0:
-                    return view.getSystemDisplayName(f);
+                    return job.describe();
                 case 1:
-                    if (f.isDirectory()) return "-";
-                    long len = f.length();
-                    return readableFileSize(len);
+                    return job.getState().toString().toLowerCase();
                 case 2:
-                    return f.isDirectory() ? "Folder" : view.getSystemTypeDescription(f);
+                    return job.progress();
                 case 3:
-                    return df.format(new Date(f.lastModified()));
+                    return job.speed();
+                case 4:
+                    return job.eta();
             }
             return null;
         }
+    }
+
+    // Queued transfers with pause/resume/cancel for the selected job
+    private static final class TransfersDialog extends JDialog {
+        private final TransferJobsModel model = new TransferJobsModel();
+        private final JTable jobsTable = new JTable(model);
+
+        TransfersDialog(Frame owner) {
+            super(owner, "Transfers", false);
+            JButton pause = new JButton("Pause");
+            JButton resume = new JButton("Resume");
+            JButton cancel = new JButton("Cancel");
+            pause.addActionListener(e -> forSelected(TransferJob::pause));
+            resume.addActionListener(e -> forSelected(TransferJob::resume));
+            cancel.addActionListener(e -> forSelected(TransferJob::cancel));
+            JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+            buttons.add(pause);
+            buttons.add(resume);
+            buttons.add(cancel);
+            jobsTable.getColumnModel().getColumn(0).setPreferredWidth(300);
+            add(new JScrollPane(jobsTable), BorderLayout.CENTER);
+            add(buttons, BorderLayout.SOUTH);
+            setSize(700, 220);
+            setLocationRelativeTo(owner);
+            new javax.swing.Timer(500, e -> model.refresh()).start();
+        }
+
+        void add(TransferJob job) {
+            model.add(job);
+        }
+
+        private void forSelected(Consumer<TransferJob> action) {
+            for (int row : jobsTable.getSelectedRows()) action.accept(model.getJobAt(row));
+        }
+    }
+
+    // File list on the system clipboard / in drag and drop
+    private static final class FileListTransferable implements Transferable {
+        private final List<File> files;
+
+        FileListTransferable(List<File> files) { this.files = files; }
+
+        public DataFlavor[] getTransferDataFlavors() {
+            return new DataFlavor[] {DataFlavor.javaFileListFlavor, DataFlavor.stringFlavor};
+        }
+
+        public boolean isDataFlavorSupported(DataFlavor flavor) {
+            return flavor.equals(DataFlavor.javaFileListFlavor) || flavor.equals(DataFlavor.stringFlavor);
+        }
 
-        private String readableFileSize(long size) {
-            if (size <= 0) return "0";
-            final String[] units = new String[] {"B", "KB", "MB", "GB", "TB"};
-            int digitGroups = (int) (Math.log10(size) / Math.log10(1024));
-            return String.format("%.1f %s", size / Math.pow(1024, digitGroups), units[digitGroups]);
+        public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+            if (flavor.equals(DataFlavor.javaFileListFlavor)) return files;
+            if (flavor.equals(DataFlavor.stringFlavor)) {
+                return files.stream().map(File::getAbsolutePath).collect(Collectors.joining("\n"));
+            }
+            throw new UnsupportedFlavorException(flavor);
+        }
+    }
+
+    // Drag out the selected files, drop onto a folder row/node (or the table background for the
+    // current folder); the drop action picks copy or move and the transfer engine does the work
+    private class FileTransferHandler extends TransferHandler {
+        @Override
+        public int getSourceActions(JComponent c) {
+            return COPY_OR_MOVE;
+        }
+
+        @Override
+        protected Transferable createTransferable(JComponent c) {
+            List<File> files = c == table ? selectedFiles() : selectedTreeFiles();
+            return files.isEmpty() ? null : new FileListTransferable(files);
+        }
+
+        @Override
+        public boolean canImport(TransferSupport support) {
+            if (!support.isDataFlavorSupported(DataFlavor.javaFileListFlavor)) return false;
+            File target = dropTarget(support);
+            return target != null && !Archives.isArchiveFolder(target);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean importData(TransferSupport support) {
+            if (!canImport(support)) return false;
+            File target = dropTarget(support);
+            try {
+                List<File> files = (List<File>) support.getTransferable().getTransferData(DataFlavor.javaFileListFlavor);
+                boolean move = support.isDrop() && support.getDropAction() == MOVE;
+                startTransfer(files, target, move);
+                return true;
+            } catch (UnsupportedFlavorException | IOException ex) {
+                return false;
+            }
+        }
+
+        private File dropTarget(TransferSupport support) {
+            if (!support.isDrop()) return currentDirectory;
+            if (support.getComponent() == table) {
+                int row = ((JTable.DropLocation) support.getDropLocation()).getRow();
+                if (row >= 0 && row < fileTableModel.getRowCount() && fileTableModel.getEntryAt(row).isDirectory()) {
+                    return fileTableModel.getFileAt(row);
+                }
+                return showingSearchResults ? null : currentDirectory;
+            }
+            TreePath path = ((JTree.DropLocation) support.getDropLocation()).getPath();
+            if (path == null) return null;
+            Object u = ((DefaultMutableTreeNode) path.getLastPathComponent()).getUserObject();
+            return u instanceof FileNode ? ((FileNode) u).getFile() : null;
+        }
+    }
+
+    // Sizes the folders of the current listing, repainting the Size column as each one finishes
+    private class FolderSizeWorker extends SwingWorker<Void, Path> {
+        private final List<Path> dirs;
+        private int sized;
+
+        FolderSizeWorker(List<Path> dirs) { this.dirs = dirs; }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            long start = System.nanoTime();
+            CountDownLatch remaining = new CountDownLatch(dirs.size());
+            for (Path dir : dirs) {
+                FOLDER_SIZE_POOL.execute(() -> {
+                    try {
+                        if (!isCancelled() && folderSizes.compute(dir, this::isCancelled) >= 0) publish(dir);
+                    } finally {
+                        remaining.countDown();
+                    }
+                });
+            }
+            remaining.await();
+            METRICS.time("folderSizes", start);
+            return null;
+        }
+
+        @Override
+        protected void process(List<Path> done) {
+            if (isCancelled() || folderSizeWorker != this) return;
+            sized += done.size();
+            // one update event for the batch; the table only repaints the rows in view
+            if (fileTableModel.getRowCount() > 0) fileTableModel.fireTableRowsUpdated(0, fileTableModel.getRowCount() - 1);
+            statusLabel.setText("Sized " + sized + " of " + dirs.size() + " folders in " + currentDirectory.getAbsolutePath());
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() || folderSizeWorker != this) return;
+            // totals are in, so a sort by size can now place the folders
+            if (sortColumn == EntrySorter.SIZE) refreshTableView();
+        }
+    }
+
+    // Sorts and filters the current rows off the EDT, keeping the row at the top of the view
+    // and the selection where they were
+    private class ViewWorker extends SwingWorker<int[], Void> {
+        private final EntryColumns rows = fileTableModel.getRows();
+        private final int[] nameOrder = fileTableModel.getNameOrder();
+        private final int count = fileTableModel.getListedCount();
+        private final int column = sortColumn;
+        private final boolean ascending = sortAscending;
+        private final EntryFilter filter = tableFilter;
+        private final FolderSizeCache totals = folderSizeMode ? folderSizes : null;
+
+        @Override
+        protected int[] doInBackground() {
+            return EntrySorter.sort(rows, nameOrder, count, column, ascending, filter, totals, this::isCancelled);
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() || viewWorker != this) return;
+            viewWorker = null;
+            int[] view;
+            try {
+                view = get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ex) {
+                statusLabel.setText("Sorting failed: " + ex.getCause().getMessage());
+                return;
+            }
+            JViewport viewport = (JViewport) table.getParent();
+            Rectangle visible = table.getVisibleRect();
+            int top = table.rowAtPoint(visible.getLocation());
+            String anchor = top >= 0 ? fileTableModel.getFileAt(top).getName() : null;
+            Set<String> selected = new HashSet<>();
+            for (int row : table.getSelectedRows()) selected.add(fileTableModel.getFileAt(row).getName());
+
+            fileTableModel.setView(rows, view);
+
+            if (!selected.isEmpty()) {
+                for (int r = 0; r < view.length; r++) {
+                    if (selected.contains(rows.name(view[r]))) table.addRowSelectionInterval(r, r);
+                }
+            }
+            int row = anchor != null ? fileTableModel.rowOf(anchor) : -1;
+            viewport.setViewPosition(new Point(visible.x, row >= 0 ? table.getCellRect(row, 0, true).y : 0));
+            if (!filter.isEmpty()) {
+                statusLabel.setText("Showing " + view.length + " of " + count + (showingSearchResults ? " matches" : " items") + " (filtered)");
+            }
+        }
+    }
+
+    // Shows the selected file: a thumbnail for images, the start of text files. Decoding runs
+    // on a small pool, a newer request cancels the one in flight, and results are cached by
+    // path, size and modification time.
+    private static final class PreviewPane extends JPanel {
+        private static final int THUMBNAIL = 256;
+        private static final int TEXT_BYTES = 1024;
+
+        private final ExecutorService decoders = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "preview");
+            t.setDaemon(true);
+            return t;
+        });
+        private final PreviewCache cache = new PreviewCache(32L << 20);
+        private final JLabel title = new JLabel(" ");
+        private final JLabel image = new JLabel("", SwingConstants.CENTER);
+        private final JTextArea text = new JTextArea();
+        private final CardLayout cards = new CardLayout();
+        private final JPanel body = new JPanel(cards);
+        // the request being shown or decoded, or null
+        private String shownKey;
+        private Future<?> pending;
+
+        PreviewPane() {
+            super(new BorderLayout(4, 4));
+            setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
+            setPreferredSize(new Dimension(280, 400));
+            text.setEditable(false);
+            text.setLineWrap(true);
+            text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            image.setVerticalTextPosition(SwingConstants.BOTTOM);
+            image.setHorizontalTextPosition(SwingConstants.CENTER);
+            body.add(image, "image");
+            body.add(new JScrollPane(text), "text");
+            add(title, BorderLayout.NORTH);
+            add(body, BorderLayout.CENTER);
+        }
+
+        void show(File file, boolean directory, long size, long modified) {
+            String key = file == null || directory ? null : file.getPath() + '|' + size + '|' + modified;
+            if (key != null && key.equals(shownKey)) return;
+            cancelPending();
+            shownKey = key;
+            title.setText(file == null ? " " : file.getName());
+            if (key == null) {
+                display(Preview.message(""));
+                return;
+            }
+            Preview cached = cache.get(key);
+            if (cached != null) {
+                display(cached);
+                return;
+            }
+            display(Preview.message(LOADING));
+            pending = decoders.submit(() -> {
+                long start = System.nanoTime();
+                Preview preview = decode(file);
+                METRICS.time("preview.decode", start);
+                if (preview == null || Thread.currentThread().isInterrupted()) return;
+                SwingUtilities.invokeLater(() -> {
+                    cache.put(key, preview);
+                    if (!key.equals(shownKey)) return;
+                    pending = null;
+                    display(preview);
+                });
+            });
+        }
+
+        // Drops the request in flight, e.g. once its row has scrolled out of view
+        void cancelPending() {
+            if (pending == null) return;
+            pending.cancel(true);
+            pending = null;
+            shownKey = null;
+        }
+
+        private void display(Preview preview) {
+            if (preview.image != null) {
+                image.setIcon(new ImageIcon(preview.image));
+                image.setText(preview.message);
+                cards.show(body, "image");
+            } else if (preview.text != null) {
+                text.setText(preview.text);
+                text.setCaretPosition(0);
+                cards.show(body, "text");
+            } else {
+                image.setIcon(null);
+                image.setText(preview.message);
+                cards.show(body, "image");
+            }
+        }
+
+        // Runs on a decoder thread; null when interrupted
+        private static Preview decode(File file) {
+            try {
+                Preview preview = decodeImage(file);
+                return preview != null ? preview : decodeText(file);
+            } catch (InterruptedIOException ex) {
+                return null;
+            } catch (IOException | RuntimeException ex) {
+                return Preview.message("No preview (" + ex.getMessage() + ")");
+            }
+        }
+
+        // Reads every n-th pixel of every n-th row, so a large photo is never decoded in full
+        private static Preview decodeImage(File file) throws IOException {
+            // a file is read in place; an archive entry has to be streamed
+            try (Archives.Handle entry = Archives.open(file)) {
+                if (!entry.inArchive()) return decodeImage(ImageIO.createImageInputStream(file));
+                try (InputStream stream = Files.newInputStream(entry.path())) {
+                    return decodeImage(ImageIO.createImageInputStream(stream));
+                }
+            }
+        }
+
+        private static Preview decodeImage(ImageInputStream input) throws IOException {
+            try (ImageInputStream in = input) {
+                if (in == null) return null;
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+                if (!readers.hasNext()) return null;
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(in, true, true);
+                    int width = reader.getWidth(0);
+                    int height = reader.getHeight(0);
+                    int step = Math.max(1, Math.max(width, height) / THUMBNAIL);
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceSubsampling(step, step, 0, 0);
+                    if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException();
+                    BufferedImage read = reader.read(0, param);
+                    if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException();
+                    return Preview.image(fit(read), width + " × " + height);
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+
+        private static BufferedImage fit(BufferedImage img) {
+            double scale = Math.min(1.0, (double) THUMBNAIL / Math.max(img.getWidth(), img.getHeight()));
+            int w = Math.max(1, (int) Math.round(img.getWidth() * scale));
+            int h = Math.max(1, (int) Math.round(img.getHeight() * scale));
+            BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = out.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(img, 0, 0, w, h, null);
+            g.dispose();
+            return out;
+        }
+
+        private static Preview decodeText(File file) throws IOException {
+            byte[] head = new byte[TEXT_BYTES];
+            int n = 0;
+            try (Archives.Handle entry = Archives.open(file);
+                 InputStream in = Files.newInputStream(entry.path())) {
+                int r;
+                while (n < head.length && (r = in.read(head, n, head.length - n)) > 0) n += r;
+            }
+            for (int i = 0; i < n; i++) {
+                if (head[i] == 0) return Preview.message("No preview (binary file)");
+            }
+            return Preview.text(new String(head, 0, n, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static final class Preview {
+        final BufferedImage image;
+        final String text;
+        final String message;
+        // approximate heap held, for the cache limit
+        final long bytes;
+
+        private Preview(BufferedImage image, String text, String message, long bytes) {
+            this.image = image;
+            this.text = text;
+            this.message = message;
+            this.bytes = bytes;
+        }
+
+        static Preview image(BufferedImage image, String caption) {
+            return new Preview(image, null, caption, 4L * image.getWidth() * image.getHeight());
+        }
+
+        static Preview text(String text) { return new Preview(null, text, null, 2L * text.length()); }
+        static Preview message(String message) { return new Preview(null, null, message, 2L * message.length()); }
+    }
+
+    // LRU of previews bounded by the memory they hold rather than their number; the newest
+    // entry is always kept, even if it is over the limit on its own
+    private static final class PreviewCache {
+        private final long limitBytes;
+        private long bytes;
+        private final LinkedHashMap<String, Preview> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+        PreviewCache(long limitBytes) { this.limitBytes = limitBytes; }
+
+        Preview get(String key) { return entries.get(key); }
+
+        void put(String key, Preview preview) {
+            Preview old = entries.put(key, preview);
+            if (old != null) bytes -= old.bytes;
+            bytes += preview.bytes;
+            for (Iterator<Preview> it = entries.values().iterator(); bytes > limitBytes && entries.size() > 1; ) {
+                bytes -= it.next().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    // Times every event dispatch, which is how long each one kept the EDT from painting
+    private static final class TimedEventQueue extends EventQueue {
+        private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+        private final Histogram dispatch = METRICS.latency("edt.dispatch");
+        private final LongAdder busy = METRICS.counter("edt.busyMillis");
+        private final LongAdder stalls = METRICS.counter("edt.stallsOver100ms");
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            long start = System.nanoTime();
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                long took = System.nanoTime() - start;
+                dispatch.record(took);
+                busy.add(TimeUnit.NANOSECONDS.toMillis(took));
+                if (took >= STALL_NANOS) stalls.increment();
+            }
+        }
+    }
+
+    private static final class DiagnosticsDialog extends JDialog {
+        private final JTextArea text = new JTextArea();
+        private final javax.swing.Timer refresh = new javax.swing.Timer(1000, e -> update());
+
+        DiagnosticsDialog(Frame owner) {
+            super(owner, "Diagnostics", false);
+            text.setEditable(false);
+            text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            JButton reset = new JButton("Reset");
+            reset.addActionListener(e -> {
+                METRICS.reset();
+                update();
+            });
+            JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+            buttons.add(reset);
+            add(new JScrollPane(text), BorderLayout.CENTER);
+            add(buttons, BorderLayout.SOUTH);
+            setSize(820, 420);
+            setLocationRelativeTo(owner);
+        }
+
+        @Override
+        public void setVisible(boolean visible) {
+            // only refresh while someone is looking
+            if (visible) {
+                update();
+                refresh.start();
+            } else {
+                refresh.stop();
+            }
+            super.setVisible(visible);
+        }
+
+        private void update() {
+            int caret = text.getCaretPosition();
+            text.setText(METRICS.report());
+            text.setCaretPosition(Math.min(caret, text.getDocument().getLength()));
+        }
+    }
+
+    // FileNode used for tree user object
+    private static class FileNode {
+        private final File file;
+        public FileNode(File file) { this.file = file; }
+        public File getFile() { return file; }
+        public String toString() {
+            String name = file.getName();
+            if (name.isEmpty()) return file.getAbsolutePath();
+            return name;
         }
     }
 
     public static void main(String[] args) {
+        // --list, --find and --du run without a display
+        if (CommandLine.handles(args)) System.exit(CommandLine.run(args));
         SwingUtilities.invokeLater(() -> {
             try {
                 // Use system look & feel for better platform integration
@@ -0,0 +1,135 @@
+package fileexplorer.cli;
+
+import fileexplorer.core.EntryColumns;
+import fileexplorer.core.ExplorerCore;
+import fileexplorer.core.FolderSizeCache;
+
+import java.io.*;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+// Headless mode: runs one listing, search or size job on ExplorerCore and streams the result
+// to stdout as tab-separated lines, never holding more than one folder's entries at a time
+public final class CommandLine {
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: FileExplorer [--list [DIR] | --find QUERY [DIR] | --du [DIR]]",
+            "  --list [DIR]        entries of DIR in directory order: size, last modified, name (folders end in /)",
+            "  --find QUERY [DIR]  paths under DIR whose name contains QUERY, or matches it when it has * or ?",
+            "  --du [DIR]          bytes under each folder in DIR, then the total for DIR",
+            "DIR defaults to the current directory. With no arguments the window opens.");
+    // how often a long search checks whether stdout went away, e.g. piped into head
+    private static final int CHECK_OUTPUT_EVERY = 1024;
+
+    private final ExplorerCore core = new ExplorerCore(new FolderSizeCache(false));
+    private final PrintWriter out;
+    private final PrintStream err;
+
+    private CommandLine(PrintWriter out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static boolean handles(String[] args) {
+        return args.length > 0 && args[0].startsWith("--");
+    }
+
+    // Returns the process exit code: 0 done, 1 failed, 2 bad arguments
+    public static int run(String[] args) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+        try {
+            return new CommandLine(out, System.err).dispatch(args);
+        } finally {
+            out.flush();
+        }
+    }
+
+    private int dispatch(String[] args) {
+        String command = args[0];
+        try {
+            switch (command) {
+                case "--list":
+                    if (args.length > 2) break;
+                    return list(dirArg(args, 1));
+                case "--find":
+                    if (args.length < 2 || args.length > 3) break;
+                    return find(args[1], dirArg(args, 2));
+                case "--du":
+                    if (args.length > 2) break;
+                    return du(dirArg(args, 1));
+                case "--help":
+                    out.println(USAGE);
+                    return 0;
+                default:
+                    err.println("Unknown option " + command);
+            }
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            err.println(command.substring(2) + ": " + describe(cause));
+            return 1;
+        }
+        err.println(USAGE);
+        return 2;
+    }
+
+    private int list(Path dir) {
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        core.list(dir, (name, flags, size, modified) -> {
+            boolean folder = (flags & EntryColumns.DIRECTORY) != 0;
+            out.append(folder ? "-" : Long.toString(size)).append('\t')
+                    .append(df.format(new Date(modified))).append('\t')
+                    .append(name).append(folder ? "/" : "").println();
+        }).join();
+        return 0;
+    }
+
+    private int find(String query, Path root) {
+        if (!Files.isDirectory(root)) {
+            err.println("find: " + root + " is not a folder");
+            return 1;
+        }
+        try (Stream<Path> matches = core.find(root, query)) {
+            int written = 0;
+            for (Iterator<Path> it = matches.iterator(); it.hasNext(); ) {
+                out.println(it.next());
+                if (++written % CHECK_OUTPUT_EVERY == 0 && out.checkError()) return 1;
+            }
+        }
+        return 0;
+    }
+
+    // One folder size at a time, each printed as soon as it is known
+    private int du(Path dir) {
+        List<String> folders = new ArrayList<>();
+        long[] own = {0};
+        core.list(dir, (name, flags, size, modified) -> {
+            if ((flags & EntryColumns.DIRECTORY) != 0) folders.add(name);
+            else own[0] += size;
+        }).join();
+        long total = own[0];
+        for (String name : folders) {
+            Path sub = dir.resolve(name);
+            // symlinks are not followed, as in the folder sizes the window shows
+            if (Files.isSymbolicLink(sub)) continue;
+            long bytes = core.size(sub).join();
+            total += bytes;
+            out.append(Long.toString(bytes)).append('\t').append(sub.toString()).println();
+            out.flush();
+        }
+        out.append(Long.toString(total)).append('\t').append(dir.toString()).println();
+        return 0;
+    }
+
+    private static Path dirArg(String[] args, int at) {
+        return Paths.get(args.length > at ? args[at] : ".").toAbsolutePath().normalize();
+    }
+
+    private static String describe(Throwable ex) {
+        if (ex instanceof NoSuchFileException) return "no such folder " + ex.getMessage();
+        if (ex instanceof NotDirectoryException) return ex.getMessage() + " is not a folder";
+        if (ex instanceof AccessDeniedException) return "access denied to " + ex.getMessage();
+        return ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,172 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.zip.ZipError;
+
+// Zip and jar files browsed as folders, without extracting them. Anything inside an archive is
+// addressed by an ordinary File below the archive's own path, e.g. /data/logs.zip/2024/jan, so
+// history, the address bar and the tree handle it like any other folder; folder and open map
+// such a File into the archive's zip filesystem for as long as the returned Handle is open.
+// Mounting reads the archive's central directory, so the last few archives stay mounted and
+// are only reopened once they change on disk. A mount pushed out of that set, or replaced, is
+// closed once its last handle is. Archives inside archives are shown as plain files.
+public final class Archives {
+    private static final int MOUNTED_LIMIT = 8;
+
+    private static final class Mount {
+        final FileSystem fs;
+        final long modified;
+        final long size;
+        // open handles; guarded by the class lock
+        int users;
+        boolean retired;
+
+        Mount(FileSystem fs, long modified, long size) {
+            this.fs = fs;
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+
+    // archive path -> mounted filesystem, least recently used first
+    private static final Map<Path, Mount> MOUNTED = new LinkedHashMap<Path, Mount>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Mount> eldest) {
+            if (size() <= MOUNTED_LIMIT) return false;
+            retire(eldest.getValue());
+            return true;
+        }
+    };
+
+    // A path into a file, folder or mounted archive, valid until closed
+    public static final class Handle implements AutoCloseable {
+        private final Mount mount;
+        private final Path path;
+        private boolean closed;
+
+        private Handle(Mount mount, Path path) {
+            this.mount = mount;
+            this.path = path;
+        }
+
+        public Path path() { return path; }
+        public boolean inArchive() { return mount != null; }
+
+        @Override
+        public void close() {
+            if (mount == null) return;
+            synchronized (Archives.class) {
+                if (closed) return;
+                closed = true;
+                if (--mount.users == 0 && mount.retired) Archives.close(mount.fs);
+            }
+        }
+    }
+
+    private Archives() {}
+
+    // By name only, so listing a folder never has to open its files
+    public static boolean isArchiveName(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".zip") || lower.endsWith(".jar");
+    }
+
+    public static boolean isArchive(File f) {
+        return isArchiveName(f.getName()) && f.isFile();
+    }
+
+    // The archive f lies inside, or null when it is an ordinary path
+    public static File containingArchive(File f) {
+        for (File at = f.getParentFile(); at != null; at = at.getParentFile()) {
+            if (isArchive(at)) return at;
+        }
+        return null;
+    }
+
+    // Whether dir is listed out of an archive: the archive itself or a folder inside one.
+    // Such folders are read-only and not watched.
+    public static boolean isArchiveFolder(File dir) {
+        return isArchive(dir) || containingArchive(dir) != null;
+    }
+
+    // Cheap enough for the EDT: only the archive file itself is checked, not the entry
+    public static boolean exists(File f) {
+        File archive = containingArchive(f);
+        return archive != null || f.exists();
+    }
+
+    // The folder to list for dir; an archive maps to the root of its contents
+    public static Handle folder(File dir) throws IOException {
+        return isArchive(dir) ? handle(dir, "/", null) : open(dir);
+    }
+
+    // The contents of f; f.toPath() unless f is inside an archive
+    public static Handle open(File f) throws IOException {
+        File archive = containingArchive(f);
+        if (archive == null) return new Handle(null, f.toPath());
+        return handle(archive, "/", archive.toPath().relativize(f.toPath()));
+    }
+
+    // Streams one entry out to a temporary file, e.g. to hand it to another application;
+    // only that entry is decompressed
+    public static File extract(File entry) throws IOException {
+        Path dir = Files.createTempDirectory("fx-archive-");
+        Path target = dir.resolve(entry.getName());
+        try (Handle source = open(entry)) {
+            Files.copy(source.path(), target);
+        }
+        // deleted in reverse order of registration: the file has to go before its folder
+        dir.toFile().deleteOnExit();
+        target.toFile().deleteOnExit();
+        return target.toFile();
+    }
+
+    private static synchronized Handle handle(File archive, String root, Path relative) throws IOException {
+        Mount mount = mount(archive);
+        Path path = mount.fs.getPath(root);
+        if (relative != null) {
+            for (Path part : relative) path = path.resolve(part.toString());
+        }
+        mount.users++;
+        return new Handle(mount, path);
+    }
+
+    private static Mount mount(File archive) throws IOException {
+        Path key = archive.toPath().toAbsolutePath().normalize();
+        BasicFileAttributes attrs = Files.readAttributes(key, BasicFileAttributes.class);
+        long modified = attrs.lastModifiedTime().toMillis();
+        Mount mounted = MOUNTED.get(key);
+        if (mounted != null && mounted.fs.isOpen() && mounted.modified == modified && mounted.size == attrs.size()) {
+            return mounted;
+        }
+        if (mounted != null) {
+            // rewritten since it was mounted: the old central directory is stale
+            MOUNTED.remove(key);
+            retire(mounted);
+        }
+        FileSystem fs;
+        try {
+            fs = FileSystems.newFileSystem(key, (ClassLoader) null);
+        } catch (ProviderNotFoundException | ZipError ex) {
+            throw new IOException(archive.getName() + " is not a readable zip archive", ex);
+        }
+        Mount mount = new Mount(fs, modified, attrs.size());
+        MOUNTED.put(key, mount);
+        return mount;
+    }
+
+    // Out of the mounted set; closed now if unused, else by its last handle
+    private static void retire(Mount mount) {
+        mount.retired = true;
+        if (mount.users == 0) close(mount.fs);
+    }
+
+    private static void close(FileSystem fs) {
+        try {
+            fs.close();
+        } catch (IOException ignored) {}
+    }
+}
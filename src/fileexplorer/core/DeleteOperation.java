@@ -0,0 +1,118 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static fileexplorer.core.Pools.FILE_OPS_POOL;
+
+// Deletes files and whole trees on FILE_OPS_POOL: each directory is one task that streams its
+// entries with walkFileTree, deletes files as it meets them and forks a task per subdirectory,
+// then removes itself once its subtasks are done (post-order). Idle workers steal subtrees.
+public final class DeleteOperation {
+    private final List<Path> targets;
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+    private volatile boolean cancelled;
+    private long startNanos;
+
+    public DeleteOperation(List<Path> targets) {
+        this.targets = targets;
+    }
+
+    public OperationReport run() {
+        startNanos = System.nanoTime();
+        List<RecursiveTask<Boolean>> tasks = new ArrayList<>();
+        for (Path target : targets) tasks.add(new DeleteTask(target));
+        FILE_OPS_POOL.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        return new OperationReport("Deleted", entries.get(), bytes.get(), System.nanoTime() - startNanos,
+                new ArrayList<>(errors), cancelled);
+    }
+
+    public void cancel() { cancelled = true; }
+
+    public String progress() {
+        return OperationReport.describe("Deleted", entries.get(), bytes.get(), System.nanoTime() - startNanos);
+    }
+
+    private boolean delete(Path p, long size) {
+        try {
+            Files.deleteIfExists(p);
+            entries.incrementAndGet();
+            bytes.addAndGet(size);
+            return true;
+        } catch (IOException ex) {
+            fail(p, ex);
+            return false;
+        }
+    }
+
+    private void fail(Path p, IOException ex) {
+        errors.add(p + ": " + (ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName()));
+    }
+
+    // Returns whether everything at and below the path is gone
+    private final class DeleteTask extends RecursiveTask<Boolean> {
+        private final Path path;
+
+        DeleteTask(Path path) { this.path = path; }
+
+        @Override
+        protected Boolean compute() {
+            if (cancelled) return false;
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException ex) {
+                return true;
+            } catch (IOException ex) {
+                fail(path, ex);
+                return false;
+            }
+            if (!attrs.isDirectory()) return delete(path, attrs.size());
+            List<DeleteTask> subdirs = new ArrayList<>();
+            boolean[] complete = {true};
+            try {
+                // depth 1: entries (subdirectories included) arrive through visitFile
+                Files.walkFileTree(path, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes a) {
+                        if (cancelled) return FileVisitResult.TERMINATE;
+                        if (a.isDirectory()) {
+                            DeleteTask sub = new DeleteTask(file);
+                            sub.fork();
+                            subdirs.add(sub);
+                        } else if (!delete(file, a.size())) {
+                            complete[0] = false;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                        fail(file, ex);
+                        complete[0] = false;
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException ex) {
+                fail(path, ex);
+                complete[0] = false;
+            }
+            for (DeleteTask sub : subdirs) {
+                if (!sub.join()) complete[0] = false;
+            }
+            // a directory with survivors would only add a "not empty" error per ancestor
+            return complete[0] && !cancelled && delete(path, 0);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package fileexplorer.core;
+
+import javax.swing.filechooser.FileSystemView;
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.*;
+
+import static fileexplorer.core.Metrics.ATTRIBUTE_READS;
+import static fileexplorer.core.Metrics.DIRECTORY_OPENS;
+
+// Reads one folder, or the inside of an archive (see Archives): a single directory stream and
+// one stat per entry, hidden files left out. Shared by the table loader, the benchmarks and
+// the command line.
+public final class DirectoryListing {
+    public static final int PUBLISH_EVERY = 256;
+
+    private DirectoryListing() {}
+
+    // One listed entry; flags as in EntryColumns
+    public interface RowSink {
+        void row(String name, byte flags, long size, long modified);
+    }
+
+    // onRows gets the row count every PUBLISH_EVERY rows and once at the end;
+    // returns false if cancelled part way
+    public static boolean read(File dir, EntryColumns into, FileSystemView view,
+                               BooleanSupplier cancelled, IntConsumer onRows) throws IOException {
+        boolean complete = read(dir, view, cancelled, (name, flags, size, modified) -> {
+            into.append(name, null, flags, size, modified);
+            if (into.size() % PUBLISH_EVERY == 0) onRows.accept(into.size());
+        });
+        if (complete) onRows.accept(into.size());
+        return complete;
+    }
+
+    // Hands each entry to sink as it is read, in directory order, keeping nothing
+    public static boolean read(File dir, FileSystemView view, BooleanSupplier cancelled, RowSink sink) throws IOException {
+        DIRECTORY_OPENS.increment();
+        try (Archives.Handle folder = Archives.folder(dir);
+             DirectoryStream<Path> stream = Files.newDirectoryStream(folder.path())) {
+            // entries of an archive have no hidden attribute to check
+            boolean local = !folder.inArchive();
+            for (Path p : stream) {
+                if (cancelled.getAsBoolean()) return false;
+                ATTRIBUTE_READS.increment();
+                if (local && view.isHiddenFile(p.toFile())) continue;
+                byte flags = 0;
+                long size = 0;
+                long modified = 0;
+                try {
+                    BasicFileAttributes attrs = FileEntry.readAttributes(p);
+                    if (attrs.isDirectory()) flags = EntryColumns.DIRECTORY;
+                    size = attrs.size();
+                    modified = attrs.lastModifiedTime().toMillis();
+                } catch (IOException ex) {
+                    // unreadable entry: keep it listed with empty attributes
+                }
+                sink.row(p.getFileName().toString(), flags, size, modified);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,164 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.util.*;
+
+// Columnar row storage for the table: names packed into shared char buffers, sizes and
+// mtimes as longs and type bits in a byte, in fixed-size blocks that are never moved.
+// One thread appends; others may read any row below a size they were handed after the
+// append, which is how the loader shows the first rows while it is still listing.
+public final class EntryColumns {
+    public static final byte DIRECTORY = 1;
+    public static final byte HIDDEN = 2;
+    private static final int BLOCK_SHIFT = 10;
+    private static final int BLOCK_ROWS = 1 << BLOCK_SHIFT;
+
+    private static final class Block {
+        volatile char[] names;
+        final int[] nameEnds = new int[BLOCK_ROWS];
+        final long[] sizes = new long[BLOCK_ROWS];
+        final long[] modified = new long[BLOCK_ROWS];
+        final byte[] flags = new byte[BLOCK_ROWS];
+        final File[] parents;
+        int chars;
+
+        Block(boolean ownParents) {
+            names = new char[BLOCK_ROWS * 16];
+            parents = ownParents ? new File[BLOCK_ROWS] : null;
+        }
+    }
+
+    // shared by every row, or null when each row records its own (search results)
+    private final File parent;
+    private volatile Block[] blocks = new Block[4];
+    private volatile int size;
+
+    public EntryColumns(File parent) { this.parent = parent; }
+
+    public static EntryColumns of(List<FileEntry> entries) {
+        EntryColumns columns = new EntryColumns(null);
+        for (FileEntry e : entries) columns.append(e);
+        return columns;
+    }
+
+    public File getParent() { return parent; }
+    public int size() { return size; }
+
+    public void append(FileEntry e) {
+        byte flags = (byte) ((e.isDirectory() ? DIRECTORY : 0) | (e.isHidden() ? HIDDEN : 0));
+        append(e.getName(), e.getFile().getParentFile(), flags, e.getSize(), e.getLastModified());
+    }
+
+    public void append(String name, File rowParent, byte flags, long length, long lastModified) {
+        int i = size;
+        Block b = blockFor(i);
+        int r = i & (BLOCK_ROWS - 1);
+        int start = r == 0 ? 0 : b.nameEnds[r - 1];
+        char[] names = b.names;
+        if (start + name.length() > names.length) {
+            // readers hold at most the old array, whose published part stays valid
+            names = Arrays.copyOf(names, Math.max(names.length * 2, start + name.length()));
+        }
+        name.getChars(0, name.length(), names, start);
+        b.names = names;
+        b.nameEnds[r] = start + name.length();
+        b.sizes[r] = length;
+        b.modified[r] = lastModified;
+        b.flags[r] = flags;
+        if (b.parents != null) b.parents[r] = rowParent;
+        size = i + 1;
+    }
+
+    public void appendFrom(EntryColumns src, int i) {
+        Block b = src.block(i);
+        int r = i & (BLOCK_ROWS - 1);
+        int start = r == 0 ? 0 : b.nameEnds[r - 1];
+        append(new String(b.names, start, b.nameEnds[r] - start), src.parentOf(i), b.flags[r], b.sizes[r], b.modified[r]);
+    }
+
+    public String name(int i) {
+        Block b = block(i);
+        int r = i & (BLOCK_ROWS - 1);
+        int start = r == 0 ? 0 : b.nameEnds[r - 1];
+        return new String(b.names, start, b.nameEnds[r] - start);
+    }
+
+    public File file(int i) { return new File(parentOf(i), name(i)); }
+    public long length(int i) { return block(i).sizes[i & (BLOCK_ROWS - 1)]; }
+    public long lastModified(int i) { return block(i).modified[i & (BLOCK_ROWS - 1)]; }
+    public boolean isDirectory(int i) { return (block(i).flags[i & (BLOCK_ROWS - 1)] & DIRECTORY) != 0; }
+    public boolean isHidden(int i) { return (block(i).flags[i & (BLOCK_ROWS - 1)] & HIDDEN) != 0; }
+
+    private File parentOf(int i) {
+        return parent != null ? parent : block(i).parents[i & (BLOCK_ROWS - 1)];
+    }
+
+    // Heap held by the blocks, roughly: what a cached listing costs to keep
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (Block b : blocks) {
+            if (b == null) continue;
+            bytes += 2L * b.names.length + BLOCK_ROWS * (4 + 8 + 8 + 1);
+            if (b.parents != null) bytes += 8L * BLOCK_ROWS;
+        }
+        return bytes;
+    }
+
+    // Same order as FileEntry.BY_NAME, without materializing either name
+    public int compareName(int a, int b) {
+        Block ba = block(a), bb = block(b);
+        int ra = a & (BLOCK_ROWS - 1), rb = b & (BLOCK_ROWS - 1);
+        int sa = ra == 0 ? 0 : ba.nameEnds[ra - 1], sb = rb == 0 ? 0 : bb.nameEnds[rb - 1];
+        return compareChars(ba.names, sa, ba.nameEnds[ra] - sa, bb.names, sb, bb.nameEnds[rb] - sb);
+    }
+
+    public int compareName(int i, String name) {
+        Block b = block(i);
+        int r = i & (BLOCK_ROWS - 1);
+        int start = r == 0 ? 0 : b.nameEnds[r - 1];
+        return compareChars(b.names, start, b.nameEnds[r] - start, name.toCharArray(), 0, name.length());
+    }
+
+    // Row indices ordered by name
+    public int[] sortedByName() {
+        int n = size;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        IntSort.sort(order, this::compareName);
+        return order;
+    }
+
+    // String.CASE_INSENSITIVE_ORDER, then exact order to break ties
+    private static int compareChars(char[] a, int sa, int la, char[] b, int sb, int lb) {
+        int n = Math.min(la, lb);
+        int exact = 0;
+        for (int k = 0; k < n; k++) {
+            char c1 = a[sa + k], c2 = b[sb + k];
+            if (c1 == c2) continue;
+            if (exact == 0) exact = c1 - c2;
+            c1 = Character.toUpperCase(c1);
+            c2 = Character.toUpperCase(c2);
+            if (c1 != c2) {
+                c1 = Character.toLowerCase(c1);
+                c2 = Character.toLowerCase(c2);
+                if (c1 != c2) return c1 - c2;
+            }
+        }
+        return la != lb ? la - lb : exact;
+    }
+
+    private Block block(int i) {
+        return blocks[i >>> BLOCK_SHIFT];
+    }
+
+    private Block blockFor(int i) {
+        int index = i >>> BLOCK_SHIFT;
+        Block[] bs = blocks;
+        if (index == bs.length) {
+            bs = Arrays.copyOf(bs, bs.length * 2);
+            blocks = bs;
+        }
+        if (bs[index] == null) bs[index] = new Block(parent == null);
+        return bs[index];
+    }
+}
@@ -0,0 +1,67 @@
+package fileexplorer.core;
+
+import java.util.*;
+
+// Row filter set from the Filter dialog; a negative size or zero age means no limit
+public final class EntryFilter {
+    public enum Kind {
+        ALL("Files and folders"), FOLDERS("Folders only"), FILES("Files only");
+
+        private final String label;
+        Kind(String label) { this.label = label; }
+        public String toString() { return label; }
+    }
+
+    public static final EntryFilter NONE = new EntryFilter(Kind.ALL, Collections.<String>emptySet(), -1, -1, 0);
+
+    public final Kind kind;
+    // lower-case, without the dot; only narrows files
+    public final Set<String> extensions;
+    public final long minSize;
+    public final long maxSize;
+    public final long maxAgeMillis;
+
+    public EntryFilter(Kind kind, Set<String> extensions, long minSize, long maxSize, long maxAgeMillis) {
+        this.kind = kind;
+        this.extensions = extensions;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public boolean isEmpty() {
+        return kind == Kind.ALL && extensions.isEmpty() && minSize < 0 && maxSize < 0 && maxAgeMillis <= 0;
+    }
+
+    // Tests row i, given the time the filter is applied at
+    public boolean accepts(EntryColumns rows, int i, long now) {
+        boolean dir = rows.isDirectory(i);
+        if (kind == Kind.FOLDERS && !dir || kind == Kind.FILES && dir) return false;
+        if (maxAgeMillis > 0 && rows.lastModified(i) < now - maxAgeMillis) return false;
+        if (dir) return true;
+        long size = rows.length(i);
+        if (minSize >= 0 && size < minSize || maxSize >= 0 && size > maxSize) return false;
+        return extensions.isEmpty() || extensions.contains(extensionOf(rows.name(i)));
+    }
+
+    public static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    // "1500", "64K", "1.5 MB" and so on, binary units as in the Size column
+    public static long parseSize(String text) {
+        String s = text.trim().toUpperCase(Locale.ROOT);
+        if (s.isEmpty()) return -1;
+        if (s.endsWith("B")) s = s.substring(0, s.length() - 1).trim();
+        long unit = 1;
+        int u = s.isEmpty() ? -1 : "KMGT".indexOf(s.charAt(s.length() - 1));
+        if (u >= 0) {
+            unit = 1L << (10 * (u + 1));
+            s = s.substring(0, s.length() - 1).trim();
+        }
+        double value = Double.parseDouble(s);
+        if (value < 0) throw new NumberFormatException("negative size: " + text);
+        return (long) (value * unit);
+    }
+}
@@ -0,0 +1,92 @@
+package fileexplorer.core;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+// Computes the rows to show for a column sort and filter. Names are ranked once (the listing
+// already holds them in name order), and every other column is reduced to a primitive key
+// per row up front, so comparisons never touch strings or the filesystem.
+public final class EntrySorter {
+    public static final int NAME = 0, SIZE = 1, TYPE = 2, MODIFIED = 3;
+
+    // nameOrder: the rows in name order, or null if they are not sorted yet
+    public static int[] sort(EntryColumns rows, int[] nameOrder, int count, int column, boolean ascending,
+                      EntryFilter filter, FolderSizeCache totals, BooleanSupplier cancelled) {
+        int[] byName = nameOrder;
+        if (byName == null) {
+            byName = new int[count];
+            for (int i = 0; i < count; i++) byName[i] = i;
+            // Name ascending is the default order, which for ranked search results is their rank
+            if (column != NAME || !ascending) IntSort.sort(byName, rows::compareName);
+        }
+        long now = System.currentTimeMillis();
+        int[] shown = byName;
+        if (!filter.isEmpty()) {
+            int[] kept = new int[count];
+            int n = 0;
+            for (int i : byName) {
+                if (filter.accepts(rows, i, now)) kept[n++] = i;
+            }
+            shown = Arrays.copyOf(kept, n);
+        } else if (column != NAME || !ascending) {
+            shown = byName.clone();
+        }
+        if (cancelled.getAsBoolean()) return null;
+
+        if (column != NAME) {
+            int[] rank = new int[count];
+            for (int r = 0; r < count; r++) rank[byName[r]] = r;
+            long[] key = new long[count];
+            for (int i : shown) key[i] = keyOf(rows, i, column, totals);
+            if (column == TYPE) rankTypes(rows, shown, key);
+            if (cancelled.getAsBoolean()) return null;
+            IntSort.sort(shown, (a, b) -> {
+                int c = Long.compare(key[a], key[b]);
+                return c != 0 ? c : rank[a] - rank[b];
+            });
+        }
+        if (!ascending) {
+            for (int i = 0, j = shown.length - 1; i < j; i++, j--) {
+                int t = shown[i];
+                shown[i] = shown[j];
+                shown[j] = t;
+            }
+        }
+        return shown;
+    }
+
+    private static long keyOf(EntryColumns rows, int i, int column, FolderSizeCache totals) {
+        switch (column) {
+            case SIZE:
+                if (!rows.isDirectory(i)) return rows.length(i);
+                Long total = totals == null ? null : totals.totalOf(rows.file(i).toPath());
+                // folders with no known total sort ahead of every file
+                return total != null ? total : -1;
+            case MODIFIED:
+                return rows.lastModified(i);
+            default:
+                return 0;
+        }
+    }
+
+    // Type is the extension, folders first. Each distinct type gets one collation key and
+    // rows carry its rank.
+    private static void rankTypes(EntryColumns rows, int[] shown, long[] key) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i : shown) {
+            String type = rows.isDirectory(i) ? "" : "." + EntryFilter.extensionOf(rows.name(i));
+            Integer id = ids.get(type);
+            if (id == null) ids.put(type, id = ids.size());
+            key[i] = id;
+        }
+        Collator collator = Collator.getInstance();
+        List<CollationKey> sorted = new ArrayList<>();
+        for (String type : ids.keySet()) sorted.add(collator.getCollationKey(type));
+        Collections.sort(sorted);
+        int[] rankOf = new int[ids.size()];
+        for (int r = 0; r < sorted.size(); r++) rankOf[ids.get(sorted.get(r).getSourceString())] = r;
+        for (int i : shown) key[i] = rankOf[(int) key[i]];
+    }
+}
@@ -0,0 +1,72 @@
+package fileexplorer.core;
+
+import javax.swing.filechooser.FileSystemView;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static fileexplorer.core.Pools.FILE_OPS_POOL;
+import static fileexplorer.core.Pools.FOLDER_SIZE_POOL;
+
+// Listing, search, folder sizes and delete without a window: the same engine the explorer
+// runs, for scripts and the command line. Nothing here blocks the caller; cancelling a
+// returned future stops the work behind it.
+public final class ExplorerCore {
+    private final FileSystemView view = FileSystemView.getFileSystemView();
+    private final FolderSizeCache folderSizes;
+
+    public ExplorerCore() {
+        this(new FolderSizeCache());
+    }
+
+    public ExplorerCore(FolderSizeCache folderSizes) {
+        this.folderSizes = folderSizes;
+    }
+
+    // Entries go to sink as they are read, on a pool thread, in directory order
+    public CompletableFuture<Void> list(Path dir, DirectoryListing.RowSink sink) {
+        return submit(FILE_OPS_POOL, cancelled -> {
+            DirectoryListing.read(dir.toFile(), view, cancelled, sink);
+            return null;
+        });
+    }
+
+    // Lazy: the crawl runs ahead of the reader by a bounded number of matches. Close the
+    // stream, e.g. with try-with-resources, to stop it early.
+    public Stream<Path> find(Path root, String query) {
+        return NameSearch.stream(root, NameQuery.parse(query));
+    }
+
+    // Total bytes of the files under dir, not following symlinks
+    public CompletableFuture<Long> size(Path dir) {
+        return submit(FOLDER_SIZE_POOL, cancelled -> folderSizes.compute(dir, cancelled));
+    }
+
+    public CompletableFuture<OperationReport> delete(List<Path> targets) {
+        DeleteOperation op = new DeleteOperation(targets);
+        CompletableFuture<OperationReport> result = submit(FILE_OPS_POOL, cancelled -> op.run());
+        result.whenComplete((report, ex) -> {
+            if (result.isCancelled()) op.cancel();
+        });
+        return result;
+    }
+
+    private interface Work<T> {
+        T run(BooleanSupplier cancelled) throws Exception;
+    }
+
+    private static <T> CompletableFuture<T> submit(ExecutorService pool, Work<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        pool.execute(() -> {
+            if (result.isDone()) return;
+            try {
+                result.complete(work.run(result::isCancelled));
+            } catch (Exception ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+}
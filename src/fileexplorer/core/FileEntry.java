@@ -0,0 +1,105 @@
+package fileexplorer.core;
+
+import javax.swing.filechooser.FileSystemView;
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+// Attribute snapshot for one table row, read once so rendering never touches the filesystem
+public final class FileEntry {
+    public static final Comparator<FileEntry> BY_NAME =
+            Comparator.comparing(FileEntry::getName, String.CASE_INSENSITIVE_ORDER).thenComparing(FileEntry::getName);
+
+    private final File file;
+    private final String name;
+    private final String displayName;
+    private final String typeDescription;
+    private final boolean directory;
+    private final boolean hidden;
+    private final long size;
+    private final long lastModified;
+    // formatted on first paint and reused afterwards
+    private String sizeText;
+    private String dateText;
+
+    private FileEntry(File file, String displayName, String typeDescription,
+                      boolean directory, boolean hidden, long size, long lastModified) {
+        this.file = file;
+        this.name = file.getName();
+        this.displayName = displayName;
+        this.typeDescription = typeDescription;
+        this.directory = directory;
+        this.hidden = hidden;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public static FileEntry read(File f, FileSystemView view) {
+        boolean dir = false;
+        long size = 0;
+        long modified = 0;
+        try {
+            BasicFileAttributes attrs = readAttributes(f.toPath());
+            dir = attrs.isDirectory();
+            size = attrs.size();
+            modified = attrs.lastModifiedTime().toMillis();
+        } catch (IOException | InvalidPathException ex) {
+            // unreadable entry: keep it listed with empty attributes
+        }
+        return of(f, dir, view.isHiddenFile(f), size, modified);
+    }
+
+    // Builds a row from attributes already read, e.g. out of EntryColumns. Runs on the EDT while
+    // painting, so the name is shown as it is and the type comes from the extension: asking the
+    // system for either is a shell call per row on Windows.
+    public static FileEntry of(File f, boolean dir, boolean hidden, long size, long modified) {
+        String display = f.getName();
+        if (display.isEmpty()) display = f.getPath();
+        return new FileEntry(f, display, typeOf(display, dir), dir, hidden, size, modified);
+    }
+
+    // "Folder", "TXT File", or "File" when there is no extension
+    public static String typeOf(String name, boolean dir) {
+        if (dir) return "Folder";
+        String ext = EntryFilter.extensionOf(name);
+        return ext.isEmpty() ? "File" : ext.toUpperCase(Locale.ROOT) + " File";
+    }
+
+    public static BasicFileAttributes readAttributes(Path p) throws IOException {
+        try {
+            return Files.readAttributes(p, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            // dangling symlink: describe the link itself
+            return Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+
+    public File getFile() { return file; }
+    public String getName() { return name; }
+    public String getDisplayName() { return displayName; }
+    public String getTypeDescription() { return typeDescription; }
+    public boolean isDirectory() { return directory; }
+    public boolean isHidden() { return hidden; }
+    public long getSize() { return size; }
+    public long getLastModified() { return lastModified; }
+
+    public String getSizeText() {
+        if (directory) return "-";
+        if (sizeText == null) sizeText = readableFileSize(size);
+        return sizeText;
+    }
+
+    public String getDateText(SimpleDateFormat df) {
+        if (dateText == null) dateText = df.format(new Date(lastModified));
+        return dateText;
+    }
+
+    public static String readableFileSize(long size) {
+        if (size <= 0) return "0";
+        final String[] units = new String[] {"B", "KB", "MB", "GB", "TB"};
+        int digitGroups = (int) (Math.log10(size) / Math.log10(1024));
+        return String.format("%.1f %s", size / Math.pow(1024, digitGroups), units[digitGroups]);
+    }
+}
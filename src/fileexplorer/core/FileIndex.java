@@ -0,0 +1,357 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Filename index for one root: entries point at their parent, names are found by trigram.
+// Ids only grow and a parent always has a smaller id than its children; deleted entries
+// are tombstoned (their subtree goes with them) until the next compaction on save.
+public final class FileIndex {
+    private final File root;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[] parents;
+    private final NameTable names;
+    private long[] modified; // last-modified time of directories, to spot changes made while closed
+    private final BitSet directories;
+    private final BitSet removed = new BitSet();
+    private int count;
+    private final TrigramTable trigrams;
+    private final Map<String, Integer> directoryIds = new HashMap<>(); // root-relative path -> id
+    private volatile boolean dirty;
+    private IndexWatcher watcher;
+
+    // A freshly crawled index, not yet saved
+    public FileIndex(File root, int[] parents, String[] names, long[] modified, BitSet directories) {
+        this(root, parents, new NameTable(names), modified, directories, null);
+    }
+
+    // Names and trigrams may be views of a mapped snapshot; null trigrams are built from the names
+    FileIndex(File root, int[] parents, NameTable names, long[] modified, BitSet directories,
+              TrigramTable trigrams) {
+        this.root = root;
+        this.parents = parents;
+        this.names = names;
+        this.modified = modified;
+        this.directories = directories;
+        this.count = parents.length;
+        this.dirty = trigrams == null;
+        this.trigrams = trigrams != null ? trigrams : buildTrigrams(names, count);
+        String[] relative = new String[count];
+        relative[0] = "";
+        directoryIds.put("", 0);
+        for (int id = directories.nextSetBit(1); id >= 0; id = directories.nextSetBit(id + 1)) {
+            relative[id] = child(relative[parents[id]], names.get(id));
+            directoryIds.put(relative[id], id);
+        }
+    }
+
+    public File getRoot() { return root; }
+    public boolean isDirty() { return dirty; }
+    public void markDirty() { dirty = true; }
+
+    // Entries indexed minus explicit removals; exact again after the next compaction
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count - 1 - removed.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean covers(File dir) {
+        String rootPath = root.getAbsolutePath();
+        String dirPath = dir.getAbsolutePath();
+        return dirPath.equals(rootPath) || dirPath.startsWith(withSeparator(rootPath));
+    }
+
+    public List<File> query(NameQuery query, File scope, int limit) {
+        lock.readLock().lock();
+        try {
+            String scopePrefix = scope.equals(root) ? null : withSeparator(scope.getAbsolutePath());
+            // max-heap on (rank, name length) so the worst hit is evicted once the cap is reached
+            PriorityQueue<long[]> best = new PriorityQueue<>(
+                    (a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0]) : Long.compare(b[1], a[1]));
+            int[] candidates = candidates(query.literal());
+            int total = candidates != null ? candidates.length : count;
+            for (int i = 0; i < total; i++) {
+                int id = candidates != null ? candidates[i] : i;
+                if (id == 0) continue;
+                String lower = names.get(id).toLowerCase();
+                if (!query.matches(lower) || !isLive(id)) continue;
+                if (scopePrefix != null && !pathOf(id).getPath().startsWith(scopePrefix)) continue;
+                long[] hit = {query.rank(lower), lower.length(), id};
+                if (best.size() < limit) {
+                    best.add(hit);
+                } else if (best.comparator().compare(hit, best.peek()) > 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+            List<long[]> ranked = new ArrayList<>(best);
+            ranked.sort(best.comparator().reversed());
+            List<File> files = new ArrayList<>(ranked.size());
+            for (long[] hit : ranked) files.add(pathOf((int) hit[2]));
+            return files;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Live directories with the modification time recorded for them
+    public Map<Path, Long> directories() {
+        lock.readLock().lock();
+        try {
+            Map<Path, Long> dirs = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> e : directoryIds.entrySet()) {
+                dirs.put(root.toPath().resolve(e.getKey()), modified[e.getValue()]);
+            }
+            return dirs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Names currently indexed directly under each of the given directories
+    public Map<Path, Set<String>> childNames(Collection<Path> dirs) {
+        lock.readLock().lock();
+        try {
+            Map<Integer, Path> byId = new HashMap<>();
+            Map<Path, Set<String>> result = new HashMap<>();
+            for (Path dir : dirs) {
+                Integer id = directoryIds.get(relative(dir));
+                if (id == null) continue;
+                byId.put(id, dir);
+                result.put(dir, new HashSet<>());
+            }
+            for (int id = 1; id < count; id++) {
+                Path dir = byId.get(parents[id]);
+                if (dir != null && !removed.get(id)) result.get(dir).add(names.get(id));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(Path p) {
+        lock.readLock().lock();
+        try {
+            return lookup(p) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(Path p, BasicFileAttributes attrs) {
+        lock.writeLock().lock();
+        try {
+            if (lookup(p) >= 0) return;
+            Integer parent = directoryIds.get(relative(p.getParent()));
+            if (parent == null) return;
+            if (count == parents.length) {
+                int capacity = count * 2;
+                parents = Arrays.copyOf(parents, capacity);
+                modified = Arrays.copyOf(modified, capacity);
+            }
+            int id = count++;
+            String name = p.getFileName().toString();
+            parents[id] = parent;
+            names.set(id, name);
+            if (attrs.isDirectory()) {
+                directories.set(id);
+                modified[id] = attrs.lastModifiedTime().toMillis();
+                directoryIds.put(relative(p), id);
+            }
+            addTrigrams(trigrams, name, id);
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Path p) {
+        lock.writeLock().lock();
+        try {
+            int id = lookup(p);
+            if (id <= 0) return;
+            removed.set(id);
+            if (directories.get(id)) {
+                String rel = relative(p);
+                String prefix = rel + "/";
+                directoryIds.keySet().removeIf(k -> k.equals(rel) || k.startsWith(prefix));
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setModified(Path dir, long time) {
+        lock.writeLock().lock();
+        try {
+            Integer id = directoryIds.get(relative(dir));
+            if (id != null && modified[id] != time) {
+                modified[id] = time;
+                dirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void startWatching(Consumer<File> onOverflow) {
+        try {
+            watcher = new IndexWatcher(this, onOverflow);
+            watcher.start();
+        } catch (IOException ex) {
+            watcher = null; // no watch support here: the snapshot is reconciled on the next launch
+        }
+    }
+
+    public void stopWatching() {
+        if (watcher != null) watcher.close();
+    }
+
+    // Copies the live entries with dense ids and marks the index clean; called by the store
+    public Snapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            int[] remap = new int[count];
+            int live = 0;
+            for (int id = 0; id < count; id++) {
+                remap[id] = id == 0 || isLive(id) ? live++ : -1;
+            }
+            Snapshot s = new Snapshot(live);
+            for (int id = 0; id < count; id++) {
+                int n = remap[id];
+                if (n < 0) continue;
+                s.parents[n] = id == 0 ? -1 : remap[parents[id]];
+                s.names[n] = names.get(id);
+                s.modified[n] = modified[id];
+                if (directories.get(id)) s.directories.set(n);
+            }
+            for (long key : trigrams.keySet()) {
+                int[] src = trigrams.get(key);
+                IntList dst = new IntList(new int[src.length], 0);
+                for (int id : src) {
+                    int n = remap[id];
+                    if (n >= 0) dst.add(n);
+                }
+                if (dst.size() > 0) s.trigrams.put(key, dst);
+            }
+            dirty = false;
+            return s;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isLive(int id) {
+        for (int i = id; i > 0; i = parents[i]) {
+            if (removed.get(i)) return false;
+        }
+        return true;
+    }
+
+    private int lookup(Path p) {
+        String rel = relative(p);
+        if (rel == null) return -1;
+        Integer dir = directoryIds.get(rel);
+        if (dir != null) return dir;
+        Integer parent = p.getParent() == null ? null : directoryIds.get(relative(p.getParent()));
+        if (parent == null) return -1;
+        String name = p.getFileName().toString();
+        int[] candidates = candidates(name.toLowerCase());
+        int total = candidates != null ? candidates.length : count;
+        for (int i = 0; i < total; i++) {
+            int id = candidates != null ? candidates[i] : i;
+            if (parents[id] == parent && !removed.get(id) && names.get(id).equals(name)) return id;
+        }
+        return -1;
+    }
+
+    // Root-relative path with '/' separators, or null when p lies outside the root
+    private String relative(Path p) {
+        Path rootPath = root.toPath();
+        if (p == null || !p.startsWith(rootPath)) return null;
+        String rel = "";
+        for (Path part : rootPath.relativize(p)) rel = child(rel, part.toString());
+        return rel;
+    }
+
+    // Sorted ids whose names contain every trigram of the literal, or null to scan everything
+    private int[] candidates(String literal) {
+        if (literal.length() < 3) return null;
+        int[] result = null;
+        for (int i = 0; i + 3 <= literal.length(); i++) {
+            int[] postings = trigrams.get(trigram(literal, i));
+            if (postings == null) return new int[0];
+            result = result == null ? postings : intersect(result, postings);
+            if (result.length == 0) break;
+        }
+        return result;
+    }
+
+    public File pathOf(int id) {
+        Deque<String> parts = new ArrayDeque<>();
+        for (int i = id; i > 0; i = parents[i]) parts.push(names.get(i));
+        File f = root;
+        for (String part : parts) f = new File(f, part);
+        return f;
+    }
+
+    private static TrigramTable buildTrigrams(NameTable names, int count) {
+        TrigramTable postings = new TrigramTable();
+        for (int id = 1; id < count; id++) addTrigrams(postings, names.get(id), id);
+        return postings;
+    }
+
+    private static void addTrigrams(TrigramTable postings, String name, int id) {
+        String lower = name.toLowerCase();
+        for (int i = 0; i + 3 <= lower.length(); i++) postings.add(trigram(lower, i), id);
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { out[n++] = a[i]; i++; j++; }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static String child(String rel, String name) {
+        return rel.isEmpty() ? name : rel + "/" + name;
+    }
+
+    private static String withSeparator(String path) {
+        return path.endsWith(File.separator) ? path : path + File.separator;
+    }
+
+    // Dense copy of the live entries, as written to disk; trigrams in key order
+    public static final class Snapshot {
+        final int[] parents;
+        final String[] names;
+        final long[] modified;
+        final BitSet directories = new BitSet();
+        final SortedMap<Long, IntList> trigrams = new TreeMap<>();
+
+        Snapshot(int size) {
+            parents = new int[size];
+            names = new String[size];
+            modified = new long[size];
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Collects entries from a parallel crawl; each directory is appended under one lock
+public final class FileIndexBuilder {
+    private final File root;
+    private final NameQuery liveQuery;
+    private final ConcurrentLinkedQueue<File> matches = new ConcurrentLinkedQueue<>();
+    private volatile boolean cancelled;
+    private int[] parents = new int[1024];
+    private String[] names = new String[1024];
+    private long[] modified = new long[1024];
+    private final BitSet directories = new BitSet();
+    private volatile int size;
+
+    public FileIndexBuilder(File root, NameQuery liveQuery) {
+        this.root = root;
+        this.liveQuery = liveQuery;
+        parents[0] = -1;
+        names[0] = "";
+        modified[0] = root.lastModified();
+        directories.set(0);
+        size = 1;
+    }
+
+    public ForkJoinTask<?> crawler() {
+        return new IndexCrawler(this, root.toPath(), 0);
+    }
+
+    public void cancel() { cancelled = true; }
+    public boolean isCancelled() { return cancelled; }
+    public int size() { return size; }
+
+    public synchronized int addAll(int parent, List<String> childNames, List<BasicFileAttributes> childAttrs) {
+        int base = size;
+        int needed = base + childNames.size();
+        if (needed > parents.length) {
+            int capacity = Math.max(needed, parents.length * 2);
+            parents = Arrays.copyOf(parents, capacity);
+            names = Arrays.copyOf(names, capacity);
+            modified = Arrays.copyOf(modified, capacity);
+        }
+        for (int i = 0; i < childNames.size(); i++) {
+            BasicFileAttributes attrs = childAttrs.get(i);
+            parents[base + i] = parent;
+            names[base + i] = childNames.get(i);
+            if (attrs.isDirectory()) {
+                directories.set(base + i);
+                modified[base + i] = attrs.lastModifiedTime().toMillis();
+            }
+        }
+        size = needed;
+        return base;
+    }
+
+    public void offerMatch(Path p) {
+        if (liveQuery != null && liveQuery.matches(p.getFileName().toString().toLowerCase())) {
+            matches.add(p.toFile());
+        }
+    }
+
+    public List<File> drainMatches() {
+        List<File> drained = new ArrayList<>();
+        File f;
+        while ((f = matches.poll()) != null) drained.add(f);
+        return drained;
+    }
+
+    public synchronized FileIndex build() {
+        return new FileIndex(root, Arrays.copyOf(parents, size), Arrays.copyOf(names, size),
+                Arrays.copyOf(modified, size), (BitSet) directories.clone());
+    }
+}
@@ -0,0 +1,217 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Binary snapshots of search indexes under ~/.file-explorer/index, memory-mapped on load.
+// Layout (big-endian): magic, version, root path, entry count, parents, directory mtimes,
+// directory bitmap, UTF-8 name offsets and bytes, sorted trigram keys, where each key's ids
+// start, all posting ids, then a CRC32 of it all. Names and postings are used in place from
+// the mapping; only parents, mtimes and the bitmap are copied out.
+// A loaded snapshot stays mapped while its index lives, and Windows will neither replace nor
+// delete a mapped file. So each save writes a new generation, <sha>.<n>.idx, and older ones
+// are deleted where the platform allows, else at a later save or launch.
+public final class FileIndexStore {
+    private static final int MAGIC = 0x46584958; // "FXIX"
+    private static final int VERSION = 2;
+    private static final File DIR = new File(System.getProperty("user.home"), ".file-explorer" + File.separator + "index");
+    private static final Pattern GENERATION = Pattern.compile("([0-9a-f]{64})\\.(\\d+)\\.idx");
+
+    // The newest generation of each index, plus files left from older naming schemes; older
+    // generations are cleared out on the way
+    public static synchronized File[] snapshots() {
+        File[] files = DIR.listFiles((d, name) -> name.endsWith(".idx"));
+        if (files == null) return new File[0];
+        List<File> result = new ArrayList<>();
+        Map<String, File> newest = new HashMap<>();
+        for (File f : files) {
+            Matcher m = GENERATION.matcher(f.getName());
+            if (m.matches()) newest.merge(m.group(1), f, (a, b) -> generationOf(a) >= generationOf(b) ? a : b);
+            else result.add(f);
+        }
+        for (Map.Entry<String, File> e : newest.entrySet()) {
+            for (File old : generations(e.getKey())) {
+                if (generationOf(old) < generationOf(e.getValue())) old.delete();
+            }
+            result.add(e.getValue());
+        }
+        return result.toArray(new File[0]);
+    }
+
+    // The newest generation for root, named by a SHA-256 of the root path so two roots never
+    // share a file
+    public static File snapshotFor(File root) {
+        String key = keyOf(root);
+        List<File> generations = generations(key);
+        return generations.isEmpty() ? new File(DIR, key + ".0.idx") : generations.get(generations.size() - 1);
+    }
+
+    public static synchronized void save(FileIndex index) throws IOException {
+        FileIndex.Snapshot s = index.snapshot();
+        Files.createDirectories(DIR.toPath());
+        String rootKey = keyOf(index.getRoot());
+        List<File> older = generations(rootKey);
+        long next = older.isEmpty() ? 0 : generationOf(older.get(older.size() - 1)) + 1;
+        File target = new File(DIR, rootKey + "." + next + ".idx");
+        File tmp = new File(DIR, target.getName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            byte[] rootBytes = index.getRoot().getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(rootBytes.length);
+            out.write(rootBytes);
+            int n = s.names.length;
+            out.writeInt(n);
+            for (int p : s.parents) out.writeInt(p);
+            for (long m : s.modified) out.writeLong(m);
+            long[] bits = s.directories.toLongArray();
+            out.writeInt(bits.length);
+            for (long b : bits) out.writeLong(b);
+            byte[][] encoded = new byte[n][];
+            int offset = 0;
+            for (int i = 0; i < n; i++) {
+                encoded[i] = s.names[i].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(offset);
+                offset += encoded[i].length;
+            }
+            out.writeInt(offset);
+            for (byte[] b : encoded) out.write(b);
+            out.writeInt(s.trigrams.size());
+            for (long key : s.trigrams.keySet()) out.writeLong(key);
+            int start = 0;
+            for (IntList list : s.trigrams.values()) {
+                out.writeInt(start);
+                start += list.size();
+            }
+            out.writeInt(start);
+            for (IntList list : s.trigrams.values()) {
+                for (int i = 0; i < list.size(); i++) out.writeInt(list.get(i));
+            }
+            out.writeLong(crc.getValue()); // covers everything written before it
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        // fails on Windows for the generation this index was loaded from
+        for (File f : older) f.delete();
+    }
+
+    // Root recorded in a snapshot header, or null if the file is not a snapshot at all
+    public static File readRoot(File snapshot) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)))) {
+            if (in.readInt() != MAGIC) return null;
+            in.readInt();
+            byte[] rootBytes = new byte[in.readInt()];
+            in.readFully(rootBytes);
+            return new File(new String(rootBytes, StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    public static FileIndex load(File snapshot, File root) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.limit() < 16) throw new IOException("Truncated index snapshot");
+            CRC32 crc = new CRC32();
+            ByteBuffer payload = buf.duplicate();
+            payload.limit(buf.limit() - 8);
+            crc.update(payload);
+            if (buf.getLong(buf.limit() - 8) != crc.getValue()) throw new IOException("Index snapshot checksum mismatch");
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) throw new IOException("Unsupported index snapshot");
+            byte[] rootBytes = new byte[buf.getInt()];
+            buf.get(rootBytes);
+            String storedRoot = new String(rootBytes, StandardCharsets.UTF_8);
+            if (!storedRoot.equals(root.getAbsolutePath())) throw new IOException("Index snapshot belongs to " + storedRoot);
+            int n = buf.getInt();
+            int[] parents = new int[n];
+            buf.asIntBuffer().get(parents);
+            buf.position(buf.position() + n * 4);
+            long[] modified = new long[n];
+            buf.asLongBuffer().get(modified);
+            buf.position(buf.position() + n * 8);
+            long[] bits = new long[buf.getInt()];
+            buf.asLongBuffer().get(bits);
+            buf.position(buf.position() + bits.length * 8);
+            IntBuffer offsets = ints(buf, n + 1);
+            ByteBuffer nameBytes = buf.slice();
+            nameBytes.limit(offsets.get(n));
+            buf.position(buf.position() + nameBytes.limit());
+            int postings = buf.getInt();
+            LongBuffer keys = buf.asLongBuffer();
+            keys.limit(postings);
+            buf.position(buf.position() + postings * 8);
+            IntBuffer starts = ints(buf, postings + 1);
+            IntBuffer ids = ints(buf, starts.get(postings));
+            if (buf.remaining() != 8) throw new IOException("Corrupt index snapshot");
+            return new FileIndex(root, parents, new NameTable(nameBytes, offsets), modified, BitSet.valueOf(bits),
+                    new TrigramTable(keys, starts, ids));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException ex) {
+            throw new IOException("Corrupt index snapshot", ex);
+        }
+    }
+
+    // A view of the next count ints, stepping past them
+    private static IntBuffer ints(ByteBuffer buf, int count) {
+        IntBuffer view = buf.asIntBuffer();
+        view.limit(count);
+        buf.position(buf.position() + count * 4);
+        return view;
+    }
+
+    // A generation that cannot be deleted yet gets an empty newer one on top, which marks the
+    // index as removed; the next launch finds it unreadable and clears the lot
+    public static synchronized void delete(File root) {
+        String key = keyOf(root);
+        List<File> generations = generations(key);
+        boolean left = false;
+        for (File f : generations) left |= !f.delete();
+        if (!left) return;
+        long next = generationOf(generations.get(generations.size() - 1)) + 1;
+        try {
+            new File(DIR, key + "." + next + ".idx").createNewFile();
+        } catch (IOException ignored) {
+            // the stale index comes back on the next launch, and is removed again
+        }
+    }
+
+    private static String keyOf(File root) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(root.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) key.append(String.format("%02x", b));
+            return key.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is required of every JVM", ex);
+        }
+    }
+
+    // Generation files of one index, oldest first
+    private static List<File> generations(String key) {
+        File[] files = DIR.listFiles((d, name) -> name.startsWith(key + ".") && GENERATION.matcher(name).matches());
+        List<File> list = files != null ? new ArrayList<>(Arrays.asList(files)) : new ArrayList<>();
+        list.sort(Comparator.comparingLong(FileIndexStore::generationOf));
+        return list;
+    }
+
+    private static long generationOf(File generation) {
+        Matcher m = GENERATION.matcher(generation.getName());
+        return m.matches() ? Long.parseLong(m.group(2)) : -1;
+    }
+}
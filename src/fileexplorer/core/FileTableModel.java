@@ -0,0 +1,290 @@
+package fileexplorer.core;
+
+import javax.swing.filechooser.FileSystemView;
+import javax.swing.table.AbstractTableModel;
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static fileexplorer.core.Metrics.METRICS;
+
+// Table model to show files. Rows live in EntryColumns; a FileEntry is only built for rows
+// that get painted or asked for, and a small cache keeps those for the rows in view.
+// A column sort or filter is shown as a view over the rows; while one is shown, changes to
+// the rows fire no events and show up once the view is recomputed.
+public class FileTableModel extends AbstractTableModel {
+    private static final int MATERIALIZED_ROWS = 2048;
+    private static final Histogram CELL_TIMES = METRICS.latency("table.getValueAt");
+
+    private final String[] columns = {"Name", "Size", "Type", "Last Modified"};
+    private EntryColumns rows = new EntryColumns(null);
+    // row -> index in rows, or null while rows are in storage order
+    private int[] order;
+    private int rowCount;
+    // the listing is in name order: by order, or as stored when order is null
+    private boolean sortedByName;
+    // view row -> index in viewRows, or null when the rows are shown as they are
+    private EntryColumns viewRows;
+    private int[] view;
+    private final Map<Integer, FileEntry> materialized = new LinkedHashMap<Integer, FileEntry>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, FileEntry> eldest) {
+            return size() > MATERIALIZED_ROWS;
+        }
+    };
+    private final FileSystemView fileSystemView = FileSystemView.getFileSystemView();
+    private final SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    // set while folder sizes are shown in the Size column
+    private FolderSizeCache folderSizes;
+    // per-file text shown in place of the type, e.g. the matching line of a content search
+    private Map<File, String> details;
+    private String detailsTitle;
+
+    public void setFolderSizes(FolderSizeCache folderSizes) {
+        this.folderSizes = folderSizes;
+        if (getRowCount() > 0) fireTableRowsUpdated(0, getRowCount() - 1);
+    }
+
+    public void setFiles(List<File> files) {
+        List<FileEntry> read = new ArrayList<>(files.size());
+        for (File f : files) read.add(FileEntry.read(f, fileSystemView));
+        setEntries(read);
+    }
+
+    public void setEntries(List<FileEntry> entries) {
+        setColumns(EntryColumns.of(entries), null, entries.size());
+    }
+
+    // Shows the first count rows of columns that a loader may still be appending to;
+    // a non-null order means the rows are complete and that is their name order
+    public void setColumns(EntryColumns columns, int[] order, int count) {
+        this.rows = columns;
+        this.order = order;
+        this.rowCount = count;
+        sortedByName = order != null;
+        details = null;
+        viewRows = null;
+        view = null;
+        materialized.clear();
+        fireTableDataChanged();
+    }
+
+    public void rowsAvailable(EntryColumns columns, int count) {
+        if (columns != rows || order != null || count <= rowCount) return;
+        int first = rowCount;
+        rowCount = count;
+        if (view == null) fireTableRowsInserted(first, count - 1);
+    }
+
+    // Shows rows of columns in the given order, as worked out by EntrySorter
+    public void setView(EntryColumns columns, int[] view) {
+        this.viewRows = columns;
+        this.view = view;
+        materialized.clear();
+        fireTableDataChanged();
+    }
+
+    public void clearView() {
+        if (view == null) return;
+        viewRows = null;
+        view = null;
+        materialized.clear();
+        fireTableDataChanged();
+    }
+
+    public boolean hasView() { return view != null; }
+
+    public void showDetails(String title) {
+        details = new HashMap<>();
+        detailsTitle = title;
+    }
+
+    public void putDetail(File file, String text) {
+        details.put(file, text);
+    }
+
+    // What a view is computed from: the rows, how many of them are listed, and their
+    // name order (null when they are not in name order)
+    public EntryColumns getRows() { return rows; }
+    public int getListedCount() { return rowCount; }
+    public int[] getNameOrder() {
+        if (!sortedByName) return null;
+        if (order != null) return order;
+        int[] identity = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) identity[i] = i;
+        return identity;
+    }
+
+    public void addEntries(List<FileEntry> more) {
+        if (more.isEmpty()) return;
+        if (order != null) {
+            EntryColumns copy = copyInRowOrder(0, rowCount, new EntryColumns(rows.getParent()));
+            rows = copy;
+            order = null;
+            materialized.clear();
+        }
+        int first = rowCount;
+        for (FileEntry e : more) rows.append(e);
+        rowCount = rows.size();
+        sortedByName = false;
+        if (view == null) fireTableRowsInserted(first, rowCount - 1);
+    }
+
+    // Drops rows by name, firing one delete event per contiguous run; rows must be sorted by name
+    public void removeNames(Set<String> names) {
+        List<Integer> gone = new ArrayList<>();
+        for (String name : names) {
+            int row = indexOf(name);
+            if (row >= 0) gone.add(row);
+        }
+        if (gone.isEmpty()) return;
+        Collections.sort(gone);
+        EntryColumns kept = new EntryColumns(rows.getParent());
+        List<int[]> runs = new ArrayList<>();
+        int next = 0;
+        for (int row : gone) {
+            copyInRowOrder(next, row, kept);
+            next = row + 1;
+            if (!runs.isEmpty() && runs.get(runs.size() - 1)[1] == row - 1) runs.get(runs.size() - 1)[1] = row;
+            else runs.add(new int[] {row, row});
+        }
+        copyInRowOrder(next, rowCount, kept);
+        replaceRows(kept);
+        // bottom-up, so each event's indices are valid after the ones before it
+        if (view != null) return;
+        for (int r = runs.size() - 1; r >= 0; r--) fireTableRowsDeleted(runs.get(r)[0], runs.get(r)[1]);
+    }
+
+    // Merges entries into the rows sorted by name: existing names are replaced in place,
+    // new ones inserted with one insert event per contiguous run
+    public void mergeEntries(List<FileEntry> incoming) {
+        if (incoming.isEmpty()) return;
+        List<FileEntry> sorted = new ArrayList<>(incoming);
+        sorted.sort(FileEntry.BY_NAME);
+        EntryColumns merged = new EntryColumns(rows.getParent());
+        List<int[]> inserted = new ArrayList<>();
+        List<Integer> updated = new ArrayList<>();
+        int i = 0;
+        for (FileEntry e : sorted) {
+            int pos = lowerBound(e.getName(), i);
+            copyInRowOrder(i, pos, merged);
+            int at = merged.size();
+            if (pos < rowCount && rows.compareName(storageIndex(pos), e.getName()) == 0) {
+                i = pos + 1;
+                updated.add(at);
+            } else {
+                i = pos;
+                if (!inserted.isEmpty() && inserted.get(inserted.size() - 1)[1] == at - 1) inserted.get(inserted.size() - 1)[1] = at;
+                else inserted.add(new int[] {at, at});
+            }
+            merged.append(e);
+        }
+        copyInRowOrder(i, rowCount, merged);
+        replaceRows(merged);
+        if (view != null) return;
+        for (int[] run : inserted) fireTableRowsInserted(run[0], run[1]);
+        for (int row : updated) fireTableRowsUpdated(row, row);
+    }
+
+    // Binary search; rows must be sorted by name
+    public int indexOf(String name) {
+        int row = lowerBound(name, 0);
+        return row < rowCount && rows.compareName(storageIndex(row), name) == 0 ? row : -1;
+    }
+
+    // Row showing the name, in the view if there is one
+    public int rowOf(String name) {
+        if (view == null) return indexOf(name);
+        for (int r = 0; r < view.length; r++) {
+            if (viewRows.compareName(view[r], name) == 0) return r;
+        }
+        return -1;
+    }
+
+    public FileEntry getEntryAt(int row) {
+        EntryColumns shown = shownRows();
+        int i = shownIndex(row);
+        FileEntry e = materialized.get(i);
+        if (e == null) {
+            e = FileEntry.of(shown.file(i), shown.isDirectory(i), shown.isHidden(i), shown.length(i), shown.lastModified(i));
+            materialized.put(i, e);
+        }
+        return e;
+    }
+
+    public File getFileAt(int row) {
+        return shownRows().file(shownIndex(row));
+    }
+
+    public boolean isDirectoryAt(int row) {
+        return shownRows().isDirectory(shownIndex(row));
+    }
+
+    public int getRowCount() { return view != null ? view.length : rowCount; }
+    public int getColumnCount() { return columns.length; }
+    public String getColumnName(int col) { return col == 2 && details != null ? detailsTitle : columns[col]; }
+
+    public Object getValueAt(int row, int col) {
+        long start = System.nanoTime();
+        try {
+            return valueAt(row, col);
+        } finally {
+            CELL_TIMES.record(System.nanoTime() - start);
+        }
+    }
+
+    private Object valueAt(int row, int col) {
+        FileEntry e = getEntryAt(row);
+        switch (col) {
+            case 0:
+                return e.getDisplayName();
+            case 1:
+                if (e.isDirectory() && folderSizes != null) {
+                    Long total = folderSizes.totalOf(e.getFile().toPath());
+                    return total != null ? FileEntry.readableFileSize(total) : "…";
+                }
+                return e.getSizeText();
+            case 2:
+                if (details != null) return details.getOrDefault(e.getFile(), "");
+                return e.getTypeDescription();
+            case 3:
+                return e.getDateText(df);
+        }
+        return null;
+    }
+
+    private int storageIndex(int row) {
+        return order != null ? order[row] : row;
+    }
+
+    private EntryColumns shownRows() {
+        return view != null ? viewRows : rows;
+    }
+
+    private int shownIndex(int row) {
+        return view != null ? view[row] : storageIndex(row);
+    }
+
+    private int lowerBound(String name, int from) {
+        int lo = from, hi = rowCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (rows.compareName(storageIndex(mid), name) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private EntryColumns copyInRowOrder(int from, int to, EntryColumns target) {
+        for (int row = from; row < to; row++) target.appendFrom(rows, storageIndex(row));
+        return target;
+    }
+
+    private void replaceRows(EntryColumns replacement) {
+        rows = replacement;
+        order = null;
+        rowCount = replacement.size();
+        sortedByName = true;
+        if (view == null) materialized.clear();
+    }
+}
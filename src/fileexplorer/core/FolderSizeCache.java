@@ -0,0 +1,111 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+import static fileexplorer.core.Metrics.ATTRIBUTE_READS;
+import static fileexplorer.core.Metrics.DIRECTORY_OPENS;
+import static fileexplorer.core.Pools.FOLDER_SIZE_POOL;
+
+// Recursive folder sizes. Each directory's own listing (bytes of its files, names of its
+// subfolders) is memoized against its mtime, so a revisit, or sizing a parent of folders
+// already sized, costs one stat per directory instead of one per file. Like any mtime
+// check this misses files rewritten in place until their folder itself changes.
+public final class FolderSizeCache {
+    private static final class Listing {
+        final long modified;
+        final long ownBytes;
+        final String[] subdirs;
+
+        Listing(long modified, long ownBytes, String[] subdirs) {
+            this.modified = modified;
+            this.ownBytes = ownBytes;
+            this.subdirs = subdirs;
+        }
+    }
+
+    private final ConcurrentHashMap<Path, Listing> listings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, Long> totals = new ConcurrentHashMap<>();
+    // off for one-shot use, e.g. the command line, where memory should not grow with the tree
+    private final boolean memoize;
+
+    public FolderSizeCache() {
+        this(true);
+    }
+
+    public FolderSizeCache(boolean memoize) {
+        this.memoize = memoize;
+    }
+
+    // Last computed total, possibly from an earlier visit
+    public Long totalOf(Path dir) {
+        return totals.get(dir);
+    }
+
+    // Returns -1 when cancelled part way
+    public long compute(Path dir, BooleanSupplier cancelled) {
+        SizeTask task = new SizeTask(dir, cancelled);
+        long total = ForkJoinTask.inForkJoinPool() ? task.invoke() : FOLDER_SIZE_POOL.invoke(task);
+        return cancelled.getAsBoolean() ? -1 : total;
+    }
+
+    private final class SizeTask extends RecursiveTask<Long> {
+        private final Path dir;
+        private final BooleanSupplier cancelled;
+
+        SizeTask(Path dir, BooleanSupplier cancelled) {
+            this.dir = dir;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected Long compute() {
+            if (cancelled.getAsBoolean()) return 0L;
+            Listing listing = listing(dir);
+            if (listing == null) return 0L;
+            List<SizeTask> subtasks = new ArrayList<>(listing.subdirs.length);
+            for (String name : listing.subdirs) subtasks.add(new SizeTask(dir.resolve(name), cancelled));
+            invokeAll(subtasks);
+            long total = listing.ownBytes;
+            for (SizeTask sub : subtasks) total += sub.join();
+            if (memoize && !cancelled.getAsBoolean()) totals.put(dir, total);
+            return total;
+        }
+    }
+
+    private Listing listing(Path dir) {
+        long modified;
+        try {
+            modified = Files.getLastModifiedTime(dir, LinkOption.NOFOLLOW_LINKS).toMillis();
+        } catch (IOException ex) {
+            listings.remove(dir);
+            return null;
+        }
+        Listing cached = listings.get(dir);
+        if (cached != null && cached.modified == modified) return cached;
+        long own = 0;
+        List<String> subdirs = new ArrayList<>();
+        DIRECTORY_OPENS.increment();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) {
+                try {
+                    ATTRIBUTE_READS.increment();
+                    BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) subdirs.add(p.getFileName().toString());
+                    else own += attrs.size();
+                } catch (IOException ex) {
+                    // vanished or unreadable: not counted
+                }
+            }
+        } catch (IOException | DirectoryIteratorException ex) {
+            return null;
+        }
+        Listing listing = new Listing(modified, own, subdirs.toArray(new String[0]));
+        if (memoize) listings.put(dir, listing);
+        return listing;
+    }
+}
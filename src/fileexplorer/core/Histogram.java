@@ -0,0 +1,77 @@
+package fileexplorer.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear buckets in the manner of HdrHistogram: 16 sub-buckets per power of two, so
+// values are kept to within about 6%. Recording allocates nothing and takes no lock.
+public final class Histogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+
+    public final boolean nanos;
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public Histogram(boolean nanos) { this.nanos = nanos; }
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+        buckets.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) {}
+    }
+
+    public long count() { return count.sum(); }
+    public long max() { return max.get(); }
+
+    public long mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    // Upper bound of the bucket holding the given fraction of samples
+    public long percentile(double fraction) {
+        long n = 0;
+        long[] snapshot = new long[buckets.length()];
+        for (int i = 0; i < snapshot.length; i++) n += snapshot[i] = buckets.get(i);
+        long target = (long) Math.ceil(fraction * n);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, target)) return Math.min(valueOf(i), max.get());
+        }
+        return 0;
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    public double scaled(long value) { return nanos ? value / 1e6 : value; }
+
+    public String format(long value) {
+        return nanos ? String.format("%.2fms", value / 1e6) : String.valueOf(value);
+    }
+
+    private static int indexOf(long v) {
+        if (v < SUB) return (int) v;
+        int magnitude = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (magnitude - SUB_BITS)) & (SUB - 1);
+        return (magnitude - SUB_BITS + 1) * SUB + sub;
+    }
+
+    private static long valueOf(int index) {
+        if (index < SUB) return index;
+        int shift = index / SUB - 1;
+        return ((long) (SUB + index % SUB) << shift) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,57 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static fileexplorer.core.Metrics.ATTRIBUTE_READS;
+import static fileexplorer.core.Metrics.DIRECTORY_OPENS;
+
+// Lists one directory and forks a task per subdirectory; symlinks are not followed
+final class IndexCrawler extends RecursiveAction {
+    private final FileIndexBuilder builder;
+    private final Path dir;
+    private final int id;
+
+    IndexCrawler(FileIndexBuilder builder, Path dir, int id) {
+        this.builder = builder;
+        this.dir = dir;
+        this.id = id;
+    }
+
+    @Override
+    protected void compute() {
+        if (builder.isCancelled()) return;
+        List<String> childNames = new ArrayList<>();
+        List<Path> children = new ArrayList<>();
+        List<BasicFileAttributes> childAttrs = new ArrayList<>();
+        DIRECTORY_OPENS.increment();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) {
+                BasicFileAttributes attrs;
+                try {
+                    ATTRIBUTE_READS.increment();
+                    attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException ex) {
+                    continue; // vanished between listing and stat
+                }
+                childNames.add(p.getFileName().toString());
+                children.add(p);
+                childAttrs.add(attrs);
+                builder.offerMatch(p);
+            }
+        } catch (IOException | DirectoryIteratorException ex) {
+            return; // unreadable directory: index what we can elsewhere
+        }
+        int base = builder.addAll(id, childNames, childAttrs);
+        List<IndexCrawler> subtasks = new ArrayList<>();
+        for (int i = 0; i < children.size(); i++) {
+            if (childAttrs.get(i).isDirectory()) {
+                subtasks.add(new IndexCrawler(builder, children.get(i), base + i));
+            }
+        }
+        invokeAll(subtasks);
+    }
+}
@@ -0,0 +1,197 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static fileexplorer.core.Metrics.METRICS;
+
+// Keeps one index current: reconciles directories changed since the snapshot, then applies
+// create/delete events. Overflow means events were lost, so the owner must rescan.
+// Directories that cannot be watched (typically out of inotify watches) are polled instead:
+// every RESCAN_SECONDS each is reconciled if its mtime moved. Watching them is retried after
+// a watch is given up elsewhere, or else on a timer that backs off while retries keep failing.
+final class IndexWatcher implements Runnable {
+    private static final long RESCAN_SECONDS = 30;
+    private static final long RETRY_MIN_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long RETRY_MAX_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private final FileIndex index;
+    private final Consumer<File> onOverflow;
+    private final WatchService service;
+    // this watcher's share of the folders polled for its root
+    private final LongAdder unwatchedDirs;
+    // unwatched directory -> mtime when last looked at; only touched by the watcher thread
+    private final Map<Path, Long> unwatched = new HashMap<>();
+    private volatile boolean closed;
+
+    IndexWatcher(FileIndex index, Consumer<File> onOverflow) throws IOException {
+        this.index = index;
+        this.onOverflow = onOverflow;
+        this.service = index.getRoot().toPath().getFileSystem().newWatchService();
+        this.unwatchedDirs = METRICS.counter("index.unwatchedDirs " + index.getRoot().getAbsolutePath());
+    }
+
+    void start() {
+        Thread t = new Thread(this, "index-watcher " + index.getRoot());
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void close() {
+        closed = true;
+        try {
+            service.close();
+        } catch (IOException ignored) {}
+    }
+
+    @Override
+    public void run() {
+        try {
+            List<Path> changed = new ArrayList<>();
+            for (Map.Entry<Path, Long> dir : index.directories().entrySet()) {
+                if (closed) return;
+                // watch first so nothing slips in between the check and the registration
+                register(dir.getKey());
+                if (lastModified(dir.getKey()) != dir.getValue()) changed.add(dir.getKey());
+            }
+            for (Map.Entry<Path, Set<String>> dir : index.childNames(changed).entrySet()) {
+                reconcile(dir.getKey(), dir.getValue());
+            }
+            long nextRescan = System.nanoTime() + TimeUnit.SECONDS.toNanos(RESCAN_SECONDS);
+            long retryDelay = RETRY_MIN_NANOS;
+            long nextRetry = System.nanoTime() + retryDelay;
+            while (!closed) {
+                WatchKey key = unwatched.isEmpty() ? service.take() : service.poll(RESCAN_SECONDS, TimeUnit.SECONDS);
+                long now = System.nanoTime();
+                if (now - nextRescan >= 0) {
+                    boolean retry = now - nextRetry >= 0;
+                    int before = unwatched.size();
+                    rescanUnwatched(retry);
+                    if (retry) {
+                        retryDelay = unwatched.size() < before ? RETRY_MIN_NANOS : Math.min(retryDelay * 2, RETRY_MAX_NANOS);
+                        nextRetry = now + retryDelay;
+                    }
+                    nextRescan = now + TimeUnit.SECONDS.toNanos(RESCAN_SECONDS);
+                }
+                if (key == null) continue;
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        close();
+                        onOverflow.accept(index.getRoot());
+                        return;
+                    }
+                    Path child = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) created(child);
+                    else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) index.remove(child);
+                }
+                index.setModified(dir, lastModified(dir));
+                if (!key.reset()) {
+                    // the folder is gone and its watch freed: worth retrying the unwatched ones
+                    retryDelay = RETRY_MIN_NANOS;
+                    nextRetry = now;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // closed by the owner
+        } finally {
+            unwatchedDirs.add(-unwatched.size());
+        }
+    }
+
+    private boolean register(Path dir) {
+        try {
+            dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            if (unwatched.remove(dir) != null) unwatchedDirs.decrement();
+            return true;
+        } catch (IOException ex) {
+            // gone, or out of watch handles: polled until a watch can be had
+            if (!unwatched.containsKey(dir)) {
+                unwatchedDirs.increment();
+                unwatched.put(dir, lastModified(dir));
+            }
+            return false;
+        }
+    }
+
+    // One stat per folder. With retry, also tries to watch them again, stopping at the first
+    // that still cannot be, so an exhausted watch limit costs one failed call per round.
+    private void rescanUnwatched(boolean retry) {
+        List<Path> changed = new ArrayList<>();
+        for (Map.Entry<Path, Long> entry : new ArrayList<>(unwatched.entrySet())) {
+            if (closed) return;
+            Path dir = entry.getKey();
+            long modified = lastModified(dir);
+            if (modified == 0) {
+                // gone: its parent reports the delete
+                unwatched.remove(dir);
+                unwatchedDirs.decrement();
+                continue;
+            }
+            if (retry && !register(dir)) retry = false;
+            if (modified == entry.getValue()) continue;
+            changed.add(dir);
+            if (unwatched.containsKey(dir)) unwatched.put(dir, modified);
+        }
+        for (Map.Entry<Path, Set<String>> dir : index.childNames(changed).entrySet()) {
+            reconcile(dir.getKey(), dir.getValue());
+        }
+    }
+
+    private void reconcile(Path dir, Set<String> known) {
+        Set<String> seen = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) {
+                seen.add(p.getFileName().toString());
+                if (!known.contains(p.getFileName().toString())) created(p);
+            }
+        } catch (IOException | DirectoryIteratorException ex) {
+            return;
+        }
+        for (String name : known) {
+            if (!seen.contains(name)) index.remove(dir.resolve(name));
+        }
+        index.setModified(dir, lastModified(dir));
+    }
+
+    // A new directory may already hold files (moved in, or filled before we registered it)
+    private void created(Path p) {
+        if (index.contains(p)) return;
+        try {
+            Files.walkFileTree(p, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    register(dir);
+                    index.add(dir, attrs);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    index.add(file, attrs);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ex) {
+            // vanished again before we could look at it
+        }
+    }
+
+    private static long lastModified(Path dir) {
+        try {
+            return Files.getLastModifiedTime(dir, LinkOption.NOFOLLOW_LINKS).toMillis();
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+}
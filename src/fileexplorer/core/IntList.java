@@ -0,0 +1,22 @@
+package fileexplorer.core;
+
+import java.util.*;
+
+// Growable int array used for trigram posting lists
+public final class IntList {
+    private int[] items;
+    private int size;
+
+    public IntList() { this(new int[4], 0); }
+    public IntList(int[] items, int size) { this.items = items; this.size = size; }
+
+    public void add(int value) {
+        if (size == items.length) items = Arrays.copyOf(items, size * 2);
+        items[size++] = value;
+    }
+
+    public int size() { return size; }
+    public int get(int i) { return items[i]; }
+    public int last() { return items[size - 1]; }
+    public int[] toArray() { return Arrays.copyOf(items, size); }
+}
@@ -0,0 +1,61 @@
+package fileexplorer.core;
+
+import java.util.concurrent.*;
+
+// Stable merge sort of row indices under a primitive comparator; big arrays are split
+// across the common pool, which suits this CPU-only work
+public final class IntSort extends RecursiveAction {
+    public interface Order {
+        int compare(int a, int b);
+    }
+
+    private static final int SEQUENTIAL = 1 << 13;
+
+    private final int[] a;
+    private final int[] tmp;
+    private final int from;
+    private final int to;
+    private final Order order;
+
+    private IntSort(int[] a, int[] tmp, int from, int to, Order order) {
+        this.a = a;
+        this.tmp = tmp;
+        this.from = from;
+        this.to = to;
+        this.order = order;
+    }
+
+    public static void sort(int[] a, Order order) {
+        int[] tmp = new int[a.length];
+        if (a.length < SEQUENTIAL) mergeSort(a, tmp, 0, a.length, order);
+        else ForkJoinPool.commonPool().invoke(new IntSort(a, tmp, 0, a.length, order));
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from < SEQUENTIAL) {
+            mergeSort(a, tmp, from, to, order);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new IntSort(a, tmp, from, mid, order), new IntSort(a, tmp, mid, to, order));
+        merge(a, tmp, from, mid, to, order);
+    }
+
+    private static void mergeSort(int[] a, int[] tmp, int from, int to, Order order) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        mergeSort(a, tmp, from, mid, order);
+        mergeSort(a, tmp, mid, to, order);
+        merge(a, tmp, from, mid, to, order);
+    }
+
+    private static void merge(int[] a, int[] tmp, int from, int mid, int to, Order order) {
+        if (order.compare(a[mid - 1], a[mid]) <= 0) return;
+        System.arraycopy(a, from, tmp, from, to - from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) a[k++] = order.compare(tmp[j], tmp[i]) < 0 ? tmp[j++] : tmp[i++];
+        while (i < mid) a[k++] = tmp[i++];
+        while (j < to) a[k++] = tmp[j++];
+    }
+}
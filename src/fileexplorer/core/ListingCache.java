@@ -0,0 +1,153 @@
+package fileexplorer.core;
+
+import javax.swing.filechooser.FileSystemView;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static fileexplorer.core.Metrics.METRICS;
+
+// Sorted listings of recently seen folders, so going back, forward or up shows a complete table
+// at once. Each snapshot carries the folder's mtime from just before it was listed; a folder
+// whose mtime still matches has had no entry added, removed or renamed since. Sizes and dates
+// of the files themselves may have moved on, so a snapshot is for showing straight away while
+// the caller checks it, not a substitute for listing. Bounded by the bytes the snapshots hold,
+// least recently used out first. Folders inside archives are not cached.
+public final class ListingCache {
+    // mtimes this close to the listing may hide a change made in the same clock tick
+    private static final long RACY_MILLIS = 2000;
+    private static final int PREFETCH_QUEUE = 8;
+    // a prefetch gives up on a folder past this many entries; opening it still lists it
+    private static final int PREFETCH_ENTRIES = 20_000;
+    private static final int SKIPPED_LIMIT = 256;
+
+    public static final class Snapshot {
+        public final EntryColumns columns;
+        public final int[] order;
+        public final long modified;
+        final long listedAt;
+        final long bytes;
+
+        Snapshot(EntryColumns columns, int[] order, long modified, long listedAt) {
+            this.columns = columns;
+            this.order = order;
+            this.modified = modified;
+            this.listedAt = listedAt;
+            this.bytes = columns.estimatedBytes() + 4L * order.length;
+        }
+    }
+
+    private final long limitBytes;
+    private long bytes;
+    private final LinkedHashMap<Path, Snapshot> snapshots = new LinkedHashMap<>(64, 0.75f, true);
+    private final FileSystemView view = FileSystemView.getFileSystemView();
+    // one low-priority thread; when requests pile up, e.g. while the mouse sweeps over
+    // folders, the oldest are dropped
+    private final ExecutorService prefetcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(PREFETCH_QUEUE), r -> {
+                Thread t = new Thread(r, "listing-prefetch");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }, new ThreadPoolExecutor.DiscardOldestPolicy());
+    private final LongAdder hits = METRICS.counter("listing.cacheHits");
+    private final LongAdder misses = METRICS.counter("listing.cacheMisses");
+    // folders a prefetch found too large or changing while listed, oldest out first, until
+    // a visit lists them; guarded by this
+    private final Set<Path> skipped = Collections.newSetFromMap(new LinkedHashMap<Path, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Boolean> eldest) {
+            return size() > SKIPPED_LIMIT;
+        }
+    });
+    private final LongAdder prefetched = METRICS.counter("listing.prefetched");
+    private final LongAdder prefetchesSkipped = METRICS.counter("listing.prefetchesSkipped");
+
+    public ListingCache(long limitBytes) { this.limitBytes = limitBytes; }
+
+    // The last listing of dir, current or not; null if there is none
+    public synchronized Snapshot get(File dir) {
+        Snapshot s = snapshots.get(TreeNodeIndex.keyOf(dir));
+        (s != null ? hits : misses).increment();
+        return s;
+    }
+
+    // modified: modifiedOf(dir) as read before listing started
+    public void put(File dir, EntryColumns columns, int[] order, long modified, long listedAt) {
+        if (modified < 0 || Archives.isArchiveFolder(dir)) return;
+        Snapshot snapshot = new Snapshot(columns, order, modified, listedAt);
+        // one huge folder should not push out every other
+        if (snapshot.bytes > limitBytes / 2) return;
+        synchronized (this) {
+            Path key = TreeNodeIndex.keyOf(dir);
+            skipped.remove(key);
+            Snapshot old = snapshots.put(key, snapshot);
+            if (old != null) bytes -= old.bytes;
+            bytes += snapshot.bytes;
+            for (Iterator<Snapshot> it = snapshots.values().iterator(); bytes > limitBytes && snapshots.size() > 1; ) {
+                bytes -= it.next().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void forget(File dir) {
+        Snapshot old = snapshots.remove(TreeNodeIndex.keyOf(dir));
+        if (old != null) bytes -= old.bytes;
+    }
+
+    // One stat: whether no entry of dir has come or gone since the snapshot was taken
+    public static boolean isCurrent(Snapshot s, long modified) {
+        return s.modified == modified && s.listedAt - s.modified >= RACY_MILLIS;
+    }
+
+    // -1 when it cannot be read
+    public static long modifiedOf(File dir) {
+        try {
+            return Files.getLastModifiedTime(dir.toPath()).toMillis();
+        } catch (IOException | InvalidPathException ex) {
+            return -1;
+        }
+    }
+
+    // Lists dir in the background unless a current snapshot exists, e.g. for a folder the
+    // user is about to open. Folders over PREFETCH_ENTRIES, or modified while being listed,
+    // are abandoned and left alone until listed by a visit. A folder modified just now is
+    // passed over this once: its snapshot could not be trusted anyway.
+    public void prefetch(File dir) {
+        if (dir == null || Archives.isArchiveFolder(dir)) return;
+        Path key = TreeNodeIndex.keyOf(dir);
+        prefetcher.execute(() -> {
+            long modified = modifiedOf(dir);
+            if (modified < 0) return;
+            synchronized (this) {
+                if (skipped.contains(key)) return;
+                Snapshot s = snapshots.get(key);
+                if (s != null && isCurrent(s, modified)) return;
+            }
+            long listedAt = System.currentTimeMillis();
+            if (listedAt - modified < RACY_MILLIS) {
+                prefetchesSkipped.increment();
+                return;
+            }
+            EntryColumns columns = new EntryColumns(dir);
+            boolean complete;
+            try {
+                complete = DirectoryListing.read(dir, columns, view, () -> columns.size() > PREFETCH_ENTRIES, rows -> {});
+            } catch (IOException | RuntimeException ex) {
+                return; // unreadable: the visit itself will say so
+            }
+            if (!complete || modifiedOf(dir) != modified) {
+                synchronized (this) {
+                    skipped.add(key);
+                }
+                prefetchesSkipped.increment();
+                return;
+            }
+            put(dir, columns, columns.sortedByName(), modified, listedAt);
+            prefetched.increment();
+        });
+    }
+}
@@ -0,0 +1,162 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histograms and counters for filesystem work and the EDT. Read through JMX
+// (FileExplorer:type=Metrics), the Diagnostics dialog, and ~/.file-explorer/metrics.log,
+// which gets a snapshot every minute.
+public final class Metrics implements DynamicMBean {
+    public static final Metrics METRICS = new Metrics();
+    // filesystem calls made while listing, across the loaders and crawlers
+    public static final LongAdder DIRECTORY_OPENS = METRICS.counter("fs.directoryOpens");
+    public static final LongAdder ATTRIBUTE_READS = METRICS.counter("fs.attributeReads");
+
+    private static final File LOG = new File(System.getProperty("user.home"), ".file-explorer" + File.separator + "metrics.log");
+    private static final long LOG_LIMIT = 1L << 20;
+
+    // sorted, so reports and JMX list them in a stable order
+    private final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+
+    public Histogram latency(String name) { return histograms.computeIfAbsent(name, n -> new Histogram(true)); }
+    public Histogram distribution(String name) { return histograms.computeIfAbsent(name, n -> new Histogram(false)); }
+    public LongAdder counter(String name) { return counters.computeIfAbsent(name, n -> new LongAdder()); }
+
+    // Records the time since startNanos, taken from System.nanoTime()
+    public void time(String name, long startNanos) {
+        latency(name).record(System.nanoTime() - startNanos);
+    }
+
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("FileExplorer:type=Metrics"));
+        } catch (JMException ex) {
+            // a second window in the same VM: the first one's registration serves both
+        }
+    }
+
+    public void reset() {
+        for (Histogram h : histograms.values()) h.reset();
+        for (LongAdder c : counters.values()) c.reset();
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-26s %9s %10s %10s %10s %10s %10s%n", "operation", "count", "mean", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            Histogram h = e.getValue();
+            sb.append(String.format("%-26s %9d %10s %10s %10s %10s %10s%n", e.getKey(), h.count(), h.format(h.mean()),
+                    h.format(h.percentile(0.5)), h.format(h.percentile(0.9)), h.format(h.percentile(0.99)), h.format(h.max())));
+        }
+        sb.append(String.format("%n%-26s %12s%n", "counter", "total"));
+        for (Map.Entry<String, LongAdder> e : counters.entrySet()) {
+            sb.append(String.format("%-26s %,12d%n", e.getKey(), e.getValue().sum()));
+        }
+        return sb.toString();
+    }
+
+    // Appends a snapshot to the log, starting a new file once it passes LOG_LIMIT
+    public void dump() {
+        try {
+            Files.createDirectories(LOG.getParentFile().toPath());
+            if (LOG.length() > LOG_LIMIT) {
+                Files.move(LOG.toPath(), new File(LOG.getPath() + ".1").toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(LOG, true), StandardCharsets.UTF_8)) {
+                out.write("=== " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + " ===\n");
+                out.write(report());
+                out.write("\n");
+            }
+        } catch (IOException ex) {
+            // metrics are best effort; the next dump tries again
+        }
+    }
+
+    // JMX: every histogram shows as <name>.count/.mean/.p50/.p99/.max (milliseconds for
+    // latencies), every counter under its own name
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        LongAdder counter = counters.get(attribute);
+        if (counter != null) return counter.sum();
+        int dot = attribute.lastIndexOf('.');
+        Histogram h = dot < 0 ? null : histograms.get(attribute.substring(0, dot));
+        if (h == null) throw new AttributeNotFoundException(attribute);
+        switch (attribute.substring(dot + 1)) {
+            case "count": return h.count();
+            case "mean": return h.scaled(h.mean());
+            case "p50": return h.scaled(h.percentile(0.5));
+            case "p99": return h.scaled(h.percentile(0.99));
+            case "max": return h.scaled(h.max());
+            default: throw new AttributeNotFoundException(attribute);
+        }
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException ex) {
+                // JMX leaves unknown names out of the result
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+        if ("reset".equals(action)) {
+            reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(action));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attrs = new ArrayList<>();
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            String unit = e.getValue().nanos ? " (ms)" : "";
+            attrs.add(new MBeanAttributeInfo(e.getKey() + ".count", "long", "Samples", true, false, false));
+            for (String stat : new String[] {"mean", "p50", "p99", "max"}) {
+                attrs.add(new MBeanAttributeInfo(e.getKey() + "." + stat, "double", stat + unit, true, false, false));
+            }
+        }
+        for (String name : counters.keySet()) {
+            attrs.add(new MBeanAttributeInfo(name, "long", "Total", true, false, false));
+        }
+        MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Clears every histogram and counter",
+                new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+        return new MBeanInfo(getClass().getName(), "File explorer metrics",
+                attrs.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[] {reset}, null);
+    }
+}
@@ -0,0 +1,58 @@
+package fileexplorer.core;
+
+import java.util.regex.Pattern;
+
+// Parsed search text: a case-insensitive substring, or a glob when it contains * or ?
+public final class NameQuery {
+    private final String text;
+    private final String lower;
+    private final Pattern glob;
+    private final String literal;
+
+    private NameQuery(String text, Pattern glob, String literal) {
+        this.text = text;
+        this.lower = text.toLowerCase();
+        this.glob = glob;
+        this.literal = literal;
+    }
+
+    public static NameQuery parse(String text) {
+        if (text.indexOf('*') < 0 && text.indexOf('?') < 0) {
+            return new NameQuery(text, null, text.toLowerCase());
+        }
+        StringBuilder regex = new StringBuilder();
+        String longest = "";
+        StringBuilder run = new StringBuilder();
+        for (char c : text.toLowerCase().toCharArray()) {
+            if (c == '*' || c == '?') {
+                regex.append(c == '*' ? ".*" : ".");
+                if (run.length() > longest.length()) longest = run.toString();
+                run.setLength(0);
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+                run.append(c);
+            }
+        }
+        if (run.length() > longest.length()) longest = run.toString();
+        return new NameQuery(text, Pattern.compile(regex.toString(), Pattern.DOTALL), longest);
+    }
+
+    // Text every match must contain, used to pick trigram candidates
+    public String literal() { return literal; }
+
+    public boolean matches(String lowerName) {
+        return glob != null ? glob.matcher(lowerName).matches() : lowerName.contains(lower);
+    }
+
+    // Lower is better: exact name, then prefix, then start of a word, then anywhere
+    public int rank(String lowerName) {
+        if (glob != null || lowerName.equals(lower)) return 0;
+        int at = lowerName.indexOf(lower);
+        if (at == 0) return 1;
+        char before = lowerName.charAt(at - 1);
+        return Character.isLetterOrDigit(before) ? 3 : 2;
+    }
+
+    @Override
+    public String toString() { return text; }
+}
@@ -0,0 +1,138 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.*;
+
+import static fileexplorer.core.Metrics.ATTRIBUTE_READS;
+import static fileexplorer.core.Metrics.DIRECTORY_OPENS;
+
+// Streams the paths under a root whose names match a query, found by a parallel crawl without
+// building an index. A few crawler threads share a queue of folders still to list; matches
+// pass through a bounded queue, so a slow reader stalls the crawl rather than growing it, and
+// memory stays flat however large the tree. A crawler closes each folder before it waits on
+// the reader. Closing the stream stops the crawl. Results come in no particular order;
+// symlinks are not followed.
+public final class NameSearch {
+    private static final int QUEUE_CAPACITY = 4096;
+    // a fixed few, so a stalled reader can never make the crawl start more
+    private static final int CRAWLERS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private static final Path END = Paths.get("");
+
+    private final NameQuery query;
+    private final BlockingQueue<Path> matches = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // folders still to list, taken newest first so the queue stays as narrow as the tree is deep
+    private final BlockingDeque<Path> folders = new LinkedBlockingDeque<>();
+    // folders queued or being listed; the crawl is over once it drops to zero
+    private final AtomicInteger unfinished = new AtomicInteger();
+    private final AtomicInteger crawlers = new AtomicInteger(CRAWLERS);
+    private volatile boolean closed;
+
+    private NameSearch(NameQuery query) {
+        this.query = query;
+    }
+
+    public static Stream<Path> stream(Path root, NameQuery query) {
+        NameSearch search = new NameSearch(query);
+        search.unfinished.set(1);
+        search.folders.add(root);
+        for (int i = 0; i < CRAWLERS; i++) {
+            Thread t = new Thread(search::crawl, "name-search-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        Iterator<Path> results = new Iterator<Path>() {
+            private Path next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) next = search.take();
+                return next != END;
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Path p = next;
+                next = null;
+                return p;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.NONNULL), false)
+                .onClose(search::close);
+    }
+
+    private void close() {
+        closed = true;
+        matches.clear();
+    }
+
+    private Path take() {
+        try {
+            return matches.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            close();
+            return END;
+        }
+    }
+
+    // Waits while the queue is full; the stalled crawler holds no open folder meanwhile
+    private void put(Path p) {
+        try {
+            while (!closed && !matches.offer(p, 100, TimeUnit.MILLISECONDS)) {
+                // wait for the reader, or for the stream to be closed
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void crawl() {
+        try {
+            while (!closed && unfinished.get() > 0) {
+                Path dir = folders.pollLast(100, TimeUnit.MILLISECONDS);
+                if (dir == null) continue; // others are still listing what may add more
+                try {
+                    list(dir);
+                } finally {
+                    unfinished.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException ex) {
+            // daemon thread: nothing to hand the interrupt to
+        } finally {
+            if (crawlers.decrementAndGet() == 0) put(END);
+        }
+    }
+
+    private void list(Path dir) {
+        List<Path> found = new ArrayList<>();
+        List<Path> subfolders = new ArrayList<>();
+        DIRECTORY_OPENS.increment();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) {
+                if (closed) return;
+                BasicFileAttributes attrs;
+                try {
+                    ATTRIBUTE_READS.increment();
+                    attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException ex) {
+                    continue; // vanished between listing and stat
+                }
+                if (query.matches(p.getFileName().toString().toLowerCase())) found.add(p);
+                if (attrs.isDirectory()) subfolders.add(p);
+            }
+        } catch (IOException | DirectoryIteratorException ex) {
+            return; // unreadable directory: search what we can elsewhere
+        }
+        // queued before waiting on the reader, so the other crawlers can go on meanwhile
+        unfinished.addAndGet(subfolders.size());
+        folders.addAll(subfolders);
+        for (Path p : found) put(p);
+    }
+}
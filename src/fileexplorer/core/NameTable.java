@@ -0,0 +1,46 @@
+package fileexplorer.core;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Entry names by id. Names loaded from a snapshot stay UTF-8 encoded in its mapped buffer and
+// are decoded when asked for; names added since are kept as strings after them.
+final class NameTable {
+    private final ByteBuffer bytes;
+    private final IntBuffer offsets; // one more than there are stored names
+    private final int stored;
+    private String[] added;
+
+    NameTable(String[] names) {
+        this.bytes = ByteBuffer.allocate(0);
+        this.offsets = IntBuffer.wrap(new int[] {0});
+        this.stored = 0;
+        this.added = names;
+    }
+
+    NameTable(ByteBuffer bytes, IntBuffer offsets) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.stored = offsets.limit() - 1;
+        this.added = new String[16];
+    }
+
+    String get(int id) {
+        if (id >= stored) return added[id - stored];
+        int from = offsets.get(id);
+        byte[] utf8 = new byte[offsets.get(id + 1) - from];
+        // a private view, so concurrent readers never share a position
+        ByteBuffer view = bytes.duplicate();
+        view.position(from);
+        view.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    void set(int id, String name) {
+        int i = id - stored;
+        if (i >= added.length) added = Arrays.copyOf(added, Math.max(16, i * 2));
+        added[i] = name;
+    }
+}
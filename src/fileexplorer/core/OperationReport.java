@@ -0,0 +1,35 @@
+package fileexplorer.core;
+
+import java.util.List;
+
+// Outcome of a file operation: counts, throughput and every per-file failure
+public final class OperationReport {
+    public final String verb;
+    public final long entries;
+    public final long bytes;
+    public final long nanos;
+    public final List<String> errors;
+    public final boolean cancelled;
+
+    public OperationReport(String verb, long entries, long bytes, long nanos, List<String> errors, boolean cancelled) {
+        this.verb = verb;
+        this.entries = entries;
+        this.bytes = bytes;
+        this.nanos = nanos;
+        this.errors = errors;
+        this.cancelled = cancelled;
+    }
+
+    public String summary() {
+        String s = describe(verb, entries, bytes, nanos);
+        if (cancelled) s += " - cancelled";
+        if (!errors.isEmpty()) s += " - " + errors.size() + " failed";
+        return s;
+    }
+
+    public static String describe(String verb, long entries, long bytes, long nanos) {
+        double seconds = Math.max(nanos / 1e9, 0.001);
+        return String.format("%s %,d items (%s) in %.1f s, %,.0f items/s", verb, entries,
+                FileEntry.readableFileSize(bytes), seconds, entries / seconds);
+    }
+}
@@ -0,0 +1,17 @@
+package fileexplorer.core;
+
+import java.util.concurrent.ForkJoinPool;
+
+// Worker pools shared by the explorer and the headless tools
+public final class Pools {
+    // Crawling is I/O bound, so run more workers than there are cores
+    public static final ForkJoinPool INDEX_POOL =
+            new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    public static final ForkJoinPool FILE_OPS_POOL =
+            new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    // kept to the core count so sizing in the background leaves the disk usable
+    public static final ForkJoinPool FOLDER_SIZE_POOL =
+            new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    private Pools() {}
+}
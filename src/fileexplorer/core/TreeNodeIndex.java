@@ -0,0 +1,40 @@
+package fileexplorer.core;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Folder path -> tree node, so following the table into a folder is a hash lookup instead of
+// a scan over the expanded tree. Keys are absolute, normalized paths.
+public final class TreeNodeIndex<N> {
+    private final Map<Path, N> nodes = new HashMap<>();
+
+    public static Path keyOf(File f) {
+        return f.toPath().toAbsolutePath().normalize();
+    }
+
+    public void put(Path key, N node) { nodes.put(key, node); }
+    public N get(Path key) { return nodes.get(key); }
+    public int size() { return nodes.size(); }
+
+    // Only drops the entry if it still belongs to this node; a reloaded branch may have replaced it
+    public void remove(Path key, N node) {
+        nodes.remove(key, node);
+    }
+
+    // The deepest indexed folder on the way from the root to target, i.e. the node to expand
+    // next; null if not even the root is indexed
+    public N closest(Path target) {
+        Path root = target.getRoot();
+        N node = root == null ? null : nodes.get(root);
+        if (node == null) return null;
+        Path at = root;
+        for (Path part : root.relativize(target)) {
+            at = at.resolve(part.toString());
+            N child = nodes.get(at);
+            if (child == null) break;
+            node = child;
+        }
+        return node;
+    }
+}
@@ -0,0 +1,65 @@
+package fileexplorer.core;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.*;
+
+// Trigram -> ascending ids of the names containing it. Postings loaded from a snapshot are
+// read from its mapped buffer: the keys are sorted, so a lookup is a binary search giving a
+// range of one shared id array. Ids only grow, so postings of entries added since simply
+// follow that range.
+final class TrigramTable {
+    private final LongBuffer keys;
+    private final IntBuffer starts; // where each key's ids begin, plus the end of the last
+    private final IntBuffer ids;
+    private final Map<Long, IntList> added = new HashMap<>();
+
+    TrigramTable() {
+        this(LongBuffer.allocate(0), IntBuffer.wrap(new int[] {0}), IntBuffer.allocate(0));
+    }
+
+    TrigramTable(LongBuffer keys, IntBuffer starts, IntBuffer ids) {
+        this.keys = keys;
+        this.starts = starts;
+        this.ids = ids;
+    }
+
+    // A fresh array the caller may keep, or null when no name has the trigram
+    int[] get(long key) {
+        int k = find(key);
+        IntList more = added.get(key);
+        if (k < 0 && more == null) return null;
+        int from = k < 0 ? 0 : starts.get(k);
+        int stored = k < 0 ? 0 : starts.get(k + 1) - from;
+        int[] out = new int[stored + (more != null ? more.size() : 0)];
+        IntBuffer view = ids.duplicate();
+        view.position(from);
+        view.get(out, 0, stored);
+        for (int i = stored; i < out.length; i++) out[i] = more.get(i - stored);
+        return out;
+    }
+
+    void add(long key, int id) {
+        IntList list = added.computeIfAbsent(key, k -> new IntList());
+        if (list.size() == 0 || list.last() != id) list.add(id); // skip repeats within a name
+    }
+
+    // Every trigram with postings, stored or added
+    Set<Long> keySet() {
+        Set<Long> all = new HashSet<>(added.keySet());
+        for (int i = 0; i < keys.limit(); i++) all.add(keys.get(i));
+        return all;
+    }
+
+    private int find(long key) {
+        int lo = 0, hi = keys.limit() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = keys.get(mid);
+            if (k < key) lo = mid + 1;
+            else if (k > key) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+}